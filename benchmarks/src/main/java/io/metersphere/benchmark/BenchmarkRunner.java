@@ -0,0 +1,40 @@
+package io.metersphere.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks selected by the JMH command line arguments once per thread count of the
+ * {@code benchmark.threads} system property (default {@code 1,4}), so that single-threaded and
+ * contended throughput are measured in one go. All other JMH options, e.g.
+ * {@code -p scriptSize=100} or {@code -rf json -rff baseline.json}, are passed through.
+ */
+public class BenchmarkRunner {
+
+    private static final String THREADS_SYSTEM_PROPERTY = "benchmark.threads";
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        if (options.shouldHelp()) {
+            options.showHelp();
+            return;
+        }
+        List<RunResult> results = new ArrayList<>();
+        for (String threads : System.getProperty(THREADS_SYSTEM_PROPERTY, "1,4").split(",")) {
+            Collection<RunResult> run = new Runner(new OptionsBuilder()
+                    .parent(options)
+                    .threads(Integer.parseInt(threads.trim()))
+                    .build()).run();
+            results.addAll(run);
+        }
+        System.out.println(results.size() + " benchmark runs completed");
+    }
+}
@@ -0,0 +1,107 @@
+package io.metersphere.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Helpers of the benchmarks that measure in a fresh JVM. The child JVM gets the JVM arguments of
+ * the parent, reports its results as JSON objects on lines starting with {@value #RESULT_PREFIX}
+ * and the parent appends them to a JSON Lines file, so that runs can be compared with standard
+ * tools.
+ */
+final class ForkedBenchmark {
+
+    static final String CHILD_ARGUMENT = "--child";
+    static final String RESULT_FILE_SYSTEM_PROPERTY = "benchmark.result-file";
+    private static final String RESULT_PREFIX = "RESULT ";
+
+    private ForkedBenchmark() {
+    }
+
+    /**
+     * Runs the main class with {@link #CHILD_ARGUMENT} and the given arguments in a new JVM and
+     * returns the reported results. The other output of the child is passed to stderr.
+     */
+    static List<String> run(Class<?> mainClass, List<String> jvmArguments, String... arguments) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.addAll(jvmArguments);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(mainClass.getName());
+        command.add(CHILD_ARGUMENT);
+        command.addAll(Arrays.asList(arguments));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        List<String> results = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(RESULT_PREFIX)) {
+                    results.add(line.substring(RESULT_PREFIX.length()));
+                } else {
+                    System.err.println(line);
+                }
+            }
+        }
+        int exitCode = process.waitFor();
+        if (exitCode != 0 || results.isEmpty()) {
+            throw new IllegalStateException(mainClass.getSimpleName() + " " + String.join(" ", arguments) + " failed with exit code " + exitCode);
+        }
+        return results;
+    }
+
+    /**
+     * Reports a result of the child JVM to the parent.
+     */
+    static void report(String json) {
+        System.out.println(RESULT_PREFIX + json);
+    }
+
+    /**
+     * Returns the file given by {@link #RESULT_FILE_SYSTEM_PROPERTY}, relative to the working
+     * directory, creating its parent directories.
+     */
+    static Path resultFile(String defaultName) throws IOException {
+        Path resultFile = Paths.get(System.getProperty(RESULT_FILE_SYSTEM_PROPERTY, "target/" + defaultName));
+        if (resultFile.getParent() != null) {
+            Files.createDirectories(resultFile.getParent());
+        }
+        return resultFile;
+    }
+
+    /**
+     * Prints the JSON object and appends it as a line to the result file.
+     */
+    static void append(Path resultFile, String json) throws IOException {
+        System.out.println(json);
+        try (Writer writer = Files.newBufferedWriter(resultFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(json);
+            writer.write(System.lineSeparator());
+        }
+    }
+
+    /**
+     * Prepends the fields of {@code header}, a JSON object without the closing brace, to the
+     * fields of {@code json}.
+     */
+    static String merge(String header, String json) {
+        return header + ", " + json.substring(1);
+    }
+
+    static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+}
@@ -0,0 +1,66 @@
+package io.metersphere.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptException;
+
+import io.metersphere.js.scriptengine.GraalJSEngineFactory;
+import io.metersphere.js.scriptengine.GraalJSScriptEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Eval of a script string, which goes through the source and parse caches, against eval of the
+ * same script compiled once. Every benchmark thread has its own engine, all engines share the
+ * polyglot engine of one factory like the engines of a JMeter test plan.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dpolyglot.engine.WarnInterpreterOnly=false")
+@State(Scope.Thread)
+public class GraalJSEvalBenchmark {
+
+    private static final GraalJSEngineFactory FACTORY = new GraalJSEngineFactory();
+
+    @Param({"1", "100", "1000"})
+    int scriptSize;
+
+    private GraalJSScriptEngine engine;
+    private String script;
+    private CompiledScript compiled;
+
+    @Setup
+    public void setUp() throws ScriptException {
+        engine = (GraalJSScriptEngine) FACTORY.getScriptEngine();
+        script = Scripts.js(scriptSize);
+        compiled = engine.compile(script);
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Benchmark
+    public Object eval() throws ScriptException {
+        return engine.eval(script);
+    }
+
+    @Benchmark
+    public Object compiledEval() throws ScriptException {
+        return compiled.eval();
+    }
+}
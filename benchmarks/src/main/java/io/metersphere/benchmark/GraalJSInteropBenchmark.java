@@ -0,0 +1,140 @@
+package io.metersphere.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.script.Bindings;
+import javax.script.ScriptContext;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+
+import io.metersphere.js.scriptengine.GraalJSEngineFactory;
+import io.metersphere.js.scriptengine.GraalJSScriptEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Host to guest calls of a sampler script: invoking a function, putting, reading and iterating
+ * {@code bindingCount} bindings, importing GLOBAL_SCOPE bindings and converting a result.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dpolyglot.engine.WarnInterpreterOnly=false")
+@State(Scope.Thread)
+public class GraalJSInteropBenchmark {
+
+    private static final GraalJSEngineFactory FACTORY = new GraalJSEngineFactory();
+    private static final String RESULT_SCRIPT = "({name: 'sampler', code: 200, headers: ['a', 'b', 'c']})";
+
+    @Param({"10", "100"})
+    int bindingCount;
+
+    private GraalJSScriptEngine engine;
+    private Bindings bindings;
+    private String[] keys;
+    private Map<String, Object> values;
+    private Bindings globals;
+    private Bindings otherGlobals;
+    private boolean swapGlobals;
+
+    @Setup
+    public void setUp() throws ScriptException {
+        engine = (GraalJSScriptEngine) FACTORY.getScriptEngine();
+        engine.eval("function add(a, b) { return a + b; }");
+        bindings = engine.getBindings(ScriptContext.ENGINE_SCOPE);
+        keys = new String[bindingCount];
+        values = new LinkedHashMap<>();
+        for (int i = 0; i < bindingCount; i++) {
+            keys[i] = "var" + i;
+            values.put(keys[i], i);
+        }
+        bindings.putAll(values);
+        globals = new SimpleBindings(new LinkedHashMap<>(values));
+        otherGlobals = new SimpleBindings(new LinkedHashMap<>(values));
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Benchmark
+    public Object invokeFunction() throws ScriptException, NoSuchMethodException {
+        return engine.invokeFunction("add", 1, 2);
+    }
+
+    @Benchmark
+    public void bindingsPut() {
+        for (int i = 0; i < keys.length; i++) {
+            bindings.put(keys[i], i);
+        }
+    }
+
+    @Benchmark
+    public void bindingsPutAll() {
+        engine.bindAll(values);
+    }
+
+    @Benchmark
+    public void bindingsGet(Blackhole blackhole) {
+        for (String key : keys) {
+            blackhole.consume(bindings.get(key));
+        }
+    }
+
+    @Benchmark
+    public void bindingsIterate(Blackhole blackhole) {
+        for (Map.Entry<String, Object> entry : bindings.entrySet()) {
+            blackhole.consume(entry.getValue());
+        }
+    }
+
+    /**
+     * Evaluates a script after replacing the GLOBAL_SCOPE bindings, so that every eval imports
+     * them again.
+     */
+    @Benchmark
+    public Object globalBindingsImport() throws ScriptException {
+        swapGlobals = !swapGlobals;
+        engine.setBindings(swapGlobals ? globals : otherGlobals, ScriptContext.GLOBAL_SCOPE);
+        return engine.eval("var0");
+    }
+
+    /**
+     * Evaluates a script with unchanged GLOBAL_SCOPE bindings, which skips the import.
+     */
+    @Benchmark
+    public Object globalBindingsUnchanged() throws ScriptException {
+        engine.setBindings(globals, ScriptContext.GLOBAL_SCOPE);
+        return engine.eval("var0");
+    }
+
+    @Benchmark
+    public Object resultEval() throws ScriptException {
+        return engine.eval(RESULT_SCRIPT);
+    }
+
+    @Benchmark
+    public Object resultEvalToValue() throws ScriptException {
+        return engine.evalToValue(RESULT_SCRIPT);
+    }
+
+    @Benchmark
+    public Object resultEvalToJava() throws ScriptException {
+        return engine.evalToJava(RESULT_SCRIPT);
+    }
+}
@@ -0,0 +1,65 @@
+package io.metersphere.benchmark;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptException;
+
+import io.metersphere.js.scriptengine.GraalJSEngineFactory;
+import io.metersphere.js.scriptengine.GraalJSScriptEngine;
+import io.metersphere.scriptengine.common.OutputMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@code print} in every output mode. The ScriptContext writer discards its input,
+ * so {@code PASSTHROUGH} measures the cost of the engine's output path and not of a console.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dpolyglot.engine.WarnInterpreterOnly=false")
+@State(Scope.Thread)
+public class GraalJSPrintBenchmark {
+
+    private static final GraalJSEngineFactory FACTORY = new GraalJSEngineFactory();
+
+    @Param({"1", "100"})
+    int lines;
+
+    @Param({"PASSTHROUGH", "DISCARD", "RING"})
+    OutputMode outputMode;
+
+    private GraalJSScriptEngine engine;
+    private CompiledScript print;
+
+    @Setup
+    public void setUp() throws ScriptException {
+        engine = (GraalJSScriptEngine) FACTORY.getScriptEngine();
+        engine.getContext().setWriter(Writer.nullWriter());
+        engine.setOutputMode(outputMode);
+        print = engine.compile(Scripts.jsPrint(lines));
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Benchmark
+    public Object print() throws ScriptException {
+        return print.eval();
+    }
+}
@@ -0,0 +1,56 @@
+package io.metersphere.benchmark;
+
+import io.metersphere.scriptengine.common.LatencyHistogram;
+
+/**
+ * Latency histogram of one worker thread with the bucket layout of {@link LatencyHistogram}, so
+ * that the benchmark percentiles compare directly with the script statistics of the engines.
+ * Recording does not allocate or synchronize, the recorders of all workers are merged with
+ * {@link #add(LatencyRecorder)} after a run.
+ */
+final class LatencyRecorder {
+
+    private final long[] buckets = new long[LatencyHistogram.BUCKETS];
+    private long count;
+    private long errors;
+    private long maxNanos;
+
+    void record(long nanos, boolean error) {
+        long value = Math.max(0, nanos);
+        buckets[LatencyHistogram.bucket(value)]++;
+        count++;
+        if (error) {
+            errors++;
+        }
+        maxNanos = Math.max(maxNanos, value);
+    }
+
+    void add(LatencyRecorder other) {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] += other.buckets[i];
+        }
+        count += other.count;
+        errors += other.errors;
+        maxNanos = Math.max(maxNanos, other.maxNanos);
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getErrorCount() {
+        return errors;
+    }
+
+    double getMaxMicros() {
+        return maxNanos / 1000.0;
+    }
+
+    /**
+     * Returns the latency below which the given fraction of the recorded latencies lies, as the
+     * middle of its bucket, or {@code 0} if nothing was recorded.
+     */
+    double getPercentileMicros(double fraction) {
+        return LatencyHistogram.percentileNanos(buckets, count, maxNanos, fraction) / 1000.0;
+    }
+}
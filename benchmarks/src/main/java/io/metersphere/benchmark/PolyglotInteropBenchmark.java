@@ -0,0 +1,116 @@
+package io.metersphere.benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.script.Bindings;
+import javax.script.ScriptContext;
+import javax.script.ScriptException;
+
+import io.metersphere.python.scriptengine.GraalPyEngineFactory;
+import io.metersphere.python.scriptengine.PolyglotEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Python counterpart of {@link GraalJSInteropBenchmark}. GLOBAL_SCOPE bindings of a Python context
+ * are fixed once the context is initialized, so the import benchmark measures
+ * {@link PolyglotEngine#bindAll(Map)}, which is how JMeter variables are handed to a script.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dpolyglot.engine.WarnInterpreterOnly=false")
+@State(Scope.Thread)
+public class PolyglotInteropBenchmark {
+
+    private static final GraalPyEngineFactory FACTORY = new GraalPyEngineFactory();
+    private static final String RESULT_SCRIPT = "{'name': 'sampler', 'code': 200, 'headers': ['a', 'b', 'c']}";
+
+    @Param({"10", "100"})
+    int bindingCount;
+
+    private PolyglotEngine engine;
+    private Bindings bindings;
+    private String[] keys;
+    private Map<String, Object> values;
+
+    @Setup
+    public void setUp() throws ScriptException {
+        engine = (PolyglotEngine) FACTORY.getScriptEngine();
+        engine.eval("def add(a, b):\n    return a + b\n");
+        bindings = engine.getBindings(ScriptContext.ENGINE_SCOPE);
+        keys = new String[bindingCount];
+        values = new LinkedHashMap<>();
+        for (int i = 0; i < bindingCount; i++) {
+            keys[i] = "var" + i;
+            values.put(keys[i], i);
+        }
+        engine.bindAll(values);
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Benchmark
+    public Object invokeFunction() throws ScriptException, NoSuchMethodException {
+        return engine.invokeFunction("add", 1, 2);
+    }
+
+    @Benchmark
+    public void bindingsPut() {
+        for (int i = 0; i < keys.length; i++) {
+            bindings.put(keys[i], i);
+        }
+    }
+
+    @Benchmark
+    public void bindingsGet(Blackhole blackhole) {
+        for (String key : keys) {
+            blackhole.consume(bindings.get(key));
+        }
+    }
+
+    @Benchmark
+    public void bindingsIterate(Blackhole blackhole) {
+        for (Map.Entry<String, Object> entry : bindings.entrySet()) {
+            blackhole.consume(entry.getValue());
+        }
+    }
+
+    @Benchmark
+    public Object bindingsImport() throws ScriptException {
+        engine.bindAll(values);
+        return engine.eval("var0");
+    }
+
+    @Benchmark
+    public Object resultEval() throws ScriptException {
+        return engine.eval(RESULT_SCRIPT);
+    }
+
+    @Benchmark
+    public Object resultEvalToValue() throws ScriptException {
+        return engine.evalToValue(RESULT_SCRIPT);
+    }
+
+    @Benchmark
+    public Object resultEvalToJava() throws ScriptException {
+        return engine.evalToJava(RESULT_SCRIPT);
+    }
+}
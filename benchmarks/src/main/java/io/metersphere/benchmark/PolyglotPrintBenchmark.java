@@ -0,0 +1,64 @@
+package io.metersphere.benchmark;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptException;
+
+import io.metersphere.python.scriptengine.GraalPyEngineFactory;
+import io.metersphere.python.scriptengine.PolyglotEngine;
+import io.metersphere.scriptengine.common.OutputMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Python counterpart of {@link GraalJSPrintBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dpolyglot.engine.WarnInterpreterOnly=false")
+@State(Scope.Thread)
+public class PolyglotPrintBenchmark {
+
+    private static final GraalPyEngineFactory FACTORY = new GraalPyEngineFactory();
+
+    @Param({"1", "100"})
+    int lines;
+
+    @Param({"PASSTHROUGH", "DISCARD", "RING"})
+    OutputMode outputMode;
+
+    private PolyglotEngine engine;
+    private CompiledScript print;
+
+    @Setup
+    public void setUp() throws ScriptException {
+        engine = (PolyglotEngine) FACTORY.getScriptEngine();
+        engine.getContext().setWriter(Writer.nullWriter());
+        engine.setOutputMode(outputMode);
+        print = engine.compile(Scripts.pythonPrint(lines));
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Benchmark
+    public Object print() throws ScriptException {
+        return print.eval();
+    }
+}
@@ -0,0 +1,112 @@
+package io.metersphere.benchmark;
+
+/**
+ * Scripts of the benchmarks. A generated script of size {@code n} has {@code n} statements, so that
+ * parse time and source cache lookups grow with the size while the result stays the same.
+ */
+final class Scripts {
+
+    /**
+     * A JSR223 PreProcessor style script: reads a JMeter variable, builds and serializes a request
+     * body, parses a response and stores values in {@code vars}, which is bound to a map.
+     */
+    static final String JS_SAMPLER = "var request = {url: 'https://example.com/api/login', user: vars.get('user'), items: []};\n"
+            + "for (var i = 0; i < 20; i++) { request.items.push({id: i, name: 'item' + i}); }\n"
+            + "var payload = JSON.stringify(request);\n"
+            + "var response = JSON.parse('{\"code\": 200, \"data\": {\"token\": \"' + vars.get('user') + '-token\"}}');\n"
+            + "vars.put('token', response.data.token);\n"
+            + "vars.put('payloadLength', String(payload.length));\n"
+            + "response.code == 200;\n";
+
+    /**
+     * Python counterpart of {@link #JS_SAMPLER}.
+     */
+    static final String PYTHON_SAMPLER = "import json\n"
+            + "request = {'url': 'https://example.com/api/login', 'user': vars.get('user'),\n"
+            + "           'items': [{'id': i, 'name': 'item%d' % i} for i in range(20)]}\n"
+            + "payload = json.dumps(request)\n"
+            + "response = json.loads('{\"code\": 200, \"data\": {\"token\": \"%s-token\"}}' % vars.get('user'))\n"
+            + "vars.put('token', response['data']['token'])\n"
+            + "vars.put('payloadLength', str(len(payload)))\n"
+            + "response['code'] == 200\n";
+
+    /**
+     * The JSR223 elements of a typical sampler in the order JMeter runs them: the
+     * {@link #JS_SAMPLER} PreProcessor, a PostProcessor extracting from the {@code responseBody}
+     * variable, an Assertion and a counter.
+     */
+    static final String[] JS_MIX = {
+            JS_SAMPLER,
+            "var body = JSON.parse(vars.get('responseBody'));\n"
+                    + "var ids = body.data.items.filter(function(item) { return item.active; }).map(function(item) { return item.id; });\n"
+                    + "vars.put('ids', ids.join(','));\n"
+                    + "ids.length;\n",
+            "var ok = vars.get('token') != null && Number(vars.get('payloadLength')) > 0 && vars.get('ids').length > 0;\n"
+                    + "if (!ok) { throw new Error('assertion failed: ' + vars.get('token')); }\n"
+                    + "ok;\n",
+            "var counter = Number(vars.get('counter') || 0) + 1;\n"
+                    + "vars.put('counter', String(counter));\n"
+                    + "vars.get('user') + '-' + counter;\n"
+    };
+
+    /**
+     * Python counterpart of {@link #JS_MIX}.
+     */
+    static final String[] PYTHON_MIX = {
+            PYTHON_SAMPLER,
+            "import json\n"
+                    + "body = json.loads(vars.get('responseBody'))\n"
+                    + "ids = [str(item['id']) for item in body['data']['items'] if item['active']]\n"
+                    + "vars.put('ids', ','.join(ids))\n"
+                    + "len(ids)\n",
+            "ok = vars.get('token') is not None and int(vars.get('payloadLength')) > 0 and len(vars.get('ids')) > 0\n"
+                    + "if not ok:\n"
+                    + "    raise AssertionError('assertion failed: %s' % vars.get('token'))\n"
+                    + "ok\n",
+            "counter = int(vars.get('counter') or 0) + 1\n"
+                    + "vars.put('counter', str(counter))\n"
+                    + "'%s-%d' % (vars.get('user'), counter)\n"
+    };
+
+    private Scripts() {
+    }
+
+    /**
+     * Returns a JSON response body with {@code items} items, as stored by a JMeter extractor.
+     */
+    static String responseBody(int items) {
+        StringBuilder body = new StringBuilder("{\"code\": 200, \"data\": {\"items\": [");
+        for (int i = 0; i < items; i++) {
+            if (i > 0) {
+                body.append(", ");
+            }
+            body.append("{\"id\": ").append(i).append(", \"name\": \"item").append(i)
+                    .append("\", \"active\": ").append(i % 3 != 0).append('}');
+        }
+        return body.append("]}}").toString();
+    }
+
+    static String js(int size) {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            script.append("var v").append(i).append(" = ").append(i).append(" * 2;\n");
+        }
+        return script.append("v0;\n").toString();
+    }
+
+    static String python(int size) {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            script.append('v').append(i).append(" = ").append(i).append(" * 2\n");
+        }
+        return script.append("v0\n").toString();
+    }
+
+    static String jsPrint(int lines) {
+        return "for (var i = 0; i < " + lines + "; i++) { print('benchmark output line ' + i); }";
+    }
+
+    static String pythonPrint(int lines) {
+        return "for i in range(" + lines + "):\n    print('benchmark output line', i)\n";
+    }
+}
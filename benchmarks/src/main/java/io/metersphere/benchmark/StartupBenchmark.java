@@ -0,0 +1,154 @@
+package io.metersphere.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+/**
+ * Cold start and footprint of both script engines, which JMH cannot measure because they are one
+ * time costs of a JVM. Every run starts a fresh JVM with the JVM arguments of this one, which
+ * measures:
+ * <ul>
+ * <li>{@code engineLookupMillis}: the first {@code ScriptEngineManager.getEngineByName}, which
+ * instantiates every script engine factory on the class-path like JMeter does,</li>
+ * <li>{@code firstEvalMillis}: the first eval of a sampler script, including the creation of the
+ * first context,</li>
+ * <li>{@code contextCreateMillis}: creating and initializing each further context, as for the
+ * threads of a test plan,</li>
+ * <li>{@code idleContextBytes} and {@code samplerContextBytes}: the retained heap per context
+ * before and after it evaluated the sampler script.</li>
+ * </ul>
+ * Every run is appended to {@code benchmark.result-file} (default
+ * {@code target/startup-benchmark.jsonl}) as one JSON object per line, so that runs can be compared
+ * with standard tools. The languages, runs per language and contexts per run are set with
+ * {@code benchmark.languages} (default {@code js,python}), {@code benchmark.runs} (default 5) and
+ * {@code benchmark.contexts} (default 20). Retained heap does not include native memory of the
+ * languages.
+ */
+public class StartupBenchmark {
+
+    private static final String LANGUAGES_SYSTEM_PROPERTY = "benchmark.languages";
+    private static final String RUNS_SYSTEM_PROPERTY = "benchmark.runs";
+    private static final String CONTEXTS_SYSTEM_PROPERTY = "benchmark.contexts";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 3 && ForkedBenchmark.CHILD_ARGUMENT.equals(args[0])) {
+            // the engines of the language threads would otherwise keep the JVM alive
+            try {
+                ForkedBenchmark.report(measure(args[1], Integer.parseInt(args[2])));
+                System.exit(0);
+            } catch (Throwable t) {
+                t.printStackTrace();
+                System.exit(1);
+            }
+        }
+        String[] languages = System.getProperty(LANGUAGES_SYSTEM_PROPERTY, "js,python").split(",");
+        int runs = Integer.getInteger(RUNS_SYSTEM_PROPERTY, 5);
+        int contexts = Integer.getInteger(CONTEXTS_SYSTEM_PROPERTY, 20);
+        Path resultFile = ForkedBenchmark.resultFile("startup-benchmark.jsonl");
+        String started = Instant.now().toString();
+        for (String language : languages) {
+            for (int run = 1; run <= runs; run++) {
+                String header = "{\"started\": \"" + started + "\", \"language\": \"" + language.trim() + "\", \"run\": " + run
+                        + ", \"java\": \"" + System.getProperty("java.vm.version") + "\"";
+                for (String result : ForkedBenchmark.run(StartupBenchmark.class, List.of(), language.trim(), Integer.toString(contexts))) {
+                    ForkedBenchmark.append(resultFile, ForkedBenchmark.merge(header, result));
+                }
+            }
+        }
+    }
+
+    private static String measure(String language, int contexts) throws ScriptException {
+        String sampler = "python".equals(language) ? Scripts.PYTHON_SAMPLER : Scripts.JS_SAMPLER;
+
+        long start = System.nanoTime();
+        ScriptEngine engine = new ScriptEngineManager().getEngineByName(language);
+        double engineLookupMillis = millisSince(start);
+        if (engine == null) {
+            throw new IllegalArgumentException("No script engine for " + language);
+        }
+
+        start = System.nanoTime();
+        evalSampler(engine, sampler, 0);
+        double firstEvalMillis = millisSince(start);
+
+        ScriptEngineFactory factory = engine.getFactory();
+        List<ScriptEngine> engines = new ArrayList<>(contexts);
+        double[] contextCreateMillis = new double[contexts];
+        long heapBefore = retainedHeap();
+        for (int i = 0; i < contexts; i++) {
+            start = System.nanoTime();
+            ScriptEngine contextEngine = factory.getScriptEngine();
+            // contexts are created lazily by the first eval
+            contextEngine.eval("0");
+            contextCreateMillis[i] = millisSince(start);
+            engines.add(contextEngine);
+        }
+        long heapIdle = retainedHeap();
+        for (int i = 0; i < contexts; i++) {
+            evalSampler(engines.get(i), sampler, i + 1);
+        }
+        long heapSampler = retainedHeap();
+        Reference.reachabilityFence(engines);
+        Reference.reachabilityFence(engine);
+
+        return "{\"contexts\": " + contexts
+                + ", \"engineLookupMillis\": " + ForkedBenchmark.format(engineLookupMillis)
+                + ", \"firstEvalMillis\": " + ForkedBenchmark.format(firstEvalMillis)
+                + ", \"contextCreateMillis\": " + format(contextCreateMillis)
+                + ", \"idleContextBytes\": " + (contexts == 0 ? 0 : (heapIdle - heapBefore) / contexts)
+                + ", \"samplerContextBytes\": " + (contexts == 0 ? 0 : (heapSampler - heapBefore) / contexts)
+                + "}";
+    }
+
+    private static void evalSampler(ScriptEngine engine, String sampler, int thread) throws ScriptException {
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("user", "user" + thread);
+        engine.put("vars", vars);
+        if (!Boolean.TRUE.equals(engine.eval(sampler)) || !vars.containsKey("token")) {
+            throw new IllegalStateException("Sampler script failed, vars: " + vars);
+        }
+    }
+
+    /**
+     * Returns the used heap after repeated full collections, which is the retained heap once it
+     * stops shrinking.
+     */
+    private static long retainedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long now = memory.getHeapMemoryUsage().getUsed();
+            if (now >= used) {
+                return now;
+            }
+            used = now;
+        }
+        return used;
+    }
+
+    private static double millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1e6;
+    }
+
+    private static String format(double[] millis) {
+        String[] formatted = new String[millis.length];
+        for (int i = 0; i < millis.length; i++) {
+            formatted[i] = ForkedBenchmark.format(millis[i]);
+        }
+        return Arrays.toString(formatted);
+    }
+}
@@ -0,0 +1,265 @@
+package io.metersphere.benchmark;
+
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.script.Bindings;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+
+/**
+ * Load driver that runs the JSR223 script mix of {@link Scripts#JS_MIX} and
+ * {@link Scripts#PYTHON_MIX} at increasing concurrency and reports throughput and latency
+ * percentiles per thread count, which shows where an engine stops scaling. Every worker thread
+ * runs the mix in a loop with its own {@code vars} map, like a JMeter thread. Each language and
+ * mode runs in a fresh JVM with the JVM arguments of this one:
+ * <ul>
+ * <li>{@code per-thread}: every worker has its own engine of a shared factory, as JMeter caches
+ * one engine per thread and script language,</li>
+ * <li>{@code shared}: all workers evaluate with new bindings on one engine, which uses the context
+ * pool of the JavaScript engine ({@code graaljs.context-pool-size}) and the thread contexts of the
+ * Python engine ({@code graalpy.thread-contexts}), both sized to the largest thread count.</li>
+ * </ul>
+ * The runs are configured with the system properties {@code benchmark.languages} (default
+ * {@code js,python}), {@code benchmark.modes} (default {@code per-thread,shared}),
+ * {@code benchmark.threads} (default 1, 2, 4, ... up to the number of processors),
+ * {@code benchmark.thread-kinds} ({@code platform,virtual}; virtual threads need Java 21 and are
+ * skipped otherwise), {@code benchmark.warmup-seconds} (default 10) and
+ * {@code benchmark.duration-seconds} (default 20). Every run is appended to
+ * {@code benchmark.result-file} (default {@code target/throughput-benchmark.jsonl}).
+ */
+public class ThroughputBenchmark {
+
+    private static final String LANGUAGES_SYSTEM_PROPERTY = "benchmark.languages";
+    private static final String MODES_SYSTEM_PROPERTY = "benchmark.modes";
+    private static final String THREADS_SYSTEM_PROPERTY = "benchmark.threads";
+    private static final String THREAD_KINDS_SYSTEM_PROPERTY = "benchmark.thread-kinds";
+    private static final String WARMUP_SECONDS_SYSTEM_PROPERTY = "benchmark.warmup-seconds";
+    private static final String DURATION_SECONDS_SYSTEM_PROPERTY = "benchmark.duration-seconds";
+    private static final String PER_THREAD_MODE = "per-thread";
+    private static final String SHARED_MODE = "shared";
+    private static final String VIRTUAL_THREADS = "virtual";
+    private static final int RESPONSE_ITEMS = 50;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 3 && ForkedBenchmark.CHILD_ARGUMENT.equals(args[0])) {
+            // the engines of the language threads would otherwise keep the JVM alive
+            try {
+                measure(args[1], args[2]);
+                System.exit(0);
+            } catch (Throwable t) {
+                t.printStackTrace();
+                System.exit(1);
+            }
+        }
+        String[] languages = System.getProperty(LANGUAGES_SYSTEM_PROPERTY, "js,python").split(",");
+        String[] modes = System.getProperty(MODES_SYSTEM_PROPERTY, PER_THREAD_MODE + "," + SHARED_MODE).split(",");
+        int maxThreads = 0;
+        for (int threads : threadCounts()) {
+            maxThreads = Math.max(maxThreads, threads);
+        }
+        Path resultFile = ForkedBenchmark.resultFile("throughput-benchmark.jsonl");
+        String started = Instant.now().toString();
+        for (String language : languages) {
+            for (String mode : modes) {
+                List<String> jvmArguments = new ArrayList<>();
+                if (SHARED_MODE.equals(mode.trim())) {
+                    jvmArguments.add("-Dgraaljs.context-pool-size=" + maxThreads);
+                    jvmArguments.add("-Dgraalpy.thread-contexts=true");
+                    jvmArguments.add("-Dgraalpy.max-thread-contexts=" + maxThreads);
+                }
+                String header = "{\"started\": \"" + started + "\", \"language\": \"" + language.trim() + "\", \"mode\": \"" + mode.trim()
+                        + "\", \"java\": \"" + System.getProperty("java.vm.version") + "\"";
+                for (String result : ForkedBenchmark.run(ThroughputBenchmark.class, jvmArguments, language.trim(), mode.trim())) {
+                    ForkedBenchmark.append(resultFile, ForkedBenchmark.merge(header, result));
+                }
+            }
+        }
+    }
+
+    private static List<Integer> threadCounts() {
+        List<Integer> counts = new ArrayList<>();
+        String threads = System.getProperty(THREADS_SYSTEM_PROPERTY);
+        if (threads != null) {
+            for (String count : threads.split(",")) {
+                counts.add(Integer.parseInt(count.trim()));
+            }
+        } else {
+            int processors = Runtime.getRuntime().availableProcessors();
+            for (int count = 1; count < processors; count *= 2) {
+                counts.add(count);
+            }
+            counts.add(processors);
+        }
+        return counts;
+    }
+
+    private static void measure(String language, String mode) throws Exception {
+        ScriptEngine engine = new ScriptEngineManager().getEngineByName(language);
+        if (engine == null) {
+            throw new IllegalArgumentException("No script engine for " + language);
+        }
+        ScriptEngineFactory factory = engine.getFactory();
+        close(engine);
+        String[] scripts = "python".equals(language) ? Scripts.PYTHON_MIX : Scripts.JS_MIX;
+        long warmupNanos = TimeUnit.SECONDS.toNanos(Long.getLong(WARMUP_SECONDS_SYSTEM_PROPERTY, 10));
+        long durationNanos = TimeUnit.SECONDS.toNanos(Long.getLong(DURATION_SECONDS_SYSTEM_PROPERTY, 20));
+        for (String threadKind : System.getProperty(THREAD_KINDS_SYSTEM_PROPERTY, "platform," + VIRTUAL_THREADS).split(",")) {
+            for (int threads : threadCounts()) {
+                ExecutorService executor = newExecutor(threadKind.trim(), threads);
+                if (executor == null) {
+                    System.err.println("Virtual threads are not supported by Java " + System.getProperty("java.version") + ", skipped");
+                    break;
+                }
+                try {
+                    ForkedBenchmark.report(run(factory, mode, scripts, executor, threads, warmupNanos, durationNanos)
+                            .toJson(threadKind.trim(), threads));
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+        }
+    }
+
+    private static ExecutorService newExecutor(String threadKind, int threads) throws ReflectiveOperationException {
+        if (!VIRTUAL_THREADS.equals(threadKind)) {
+            return Executors.newFixedThreadPool(threads);
+        }
+        Method newVirtualThreadExecutor;
+        try {
+            // compiled for Java 17
+            newVirtualThreadExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+        return (ExecutorService) newVirtualThreadExecutor.invoke(null);
+    }
+
+    private static Run run(ScriptEngineFactory factory, String mode, String[] scripts, ExecutorService executor, int threads,
+                           long warmupNanos, long durationNanos) throws Exception {
+        ScriptEngine sharedEngine = SHARED_MODE.equals(mode) ? factory.getScriptEngine() : null;
+        Run run = new Run();
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<LatencyRecorder>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int thread = i;
+            workers.add(executor.submit(() -> {
+                ScriptEngine engine = sharedEngine != null ? sharedEngine : factory.getScriptEngine();
+                Map<String, Object> vars = new HashMap<>();
+                vars.put("user", "user" + thread);
+                vars.put("responseBody", Scripts.responseBody(RESPONSE_ITEMS));
+                if (sharedEngine == null) {
+                    engine.put("vars", vars);
+                }
+                LatencyRecorder latencies = new LatencyRecorder();
+                try {
+                    try {
+                        // creates the context and imports modules before the clock starts
+                        for (String script : scripts) {
+                            eval(engine, sharedEngine != null, script, vars);
+                        }
+                    } finally {
+                        ready.countDown();
+                    }
+                    start.await();
+                    for (int iteration = 0; run.running; iteration++) {
+                        long startNanos = System.nanoTime();
+                        boolean failed = false;
+                        try {
+                            eval(engine, sharedEngine != null, scripts[iteration % scripts.length], vars);
+                        } catch (Exception e) {
+                            failed = true;
+                            run.firstError(e);
+                        }
+                        if (run.measuring) {
+                            latencies.record(System.nanoTime() - startNanos, failed);
+                        }
+                    }
+                } finally {
+                    if (sharedEngine == null) {
+                        close(engine);
+                    }
+                }
+                return latencies;
+            }));
+        }
+        ready.await();
+        start.countDown();
+        TimeUnit.NANOSECONDS.sleep(warmupNanos);
+        long measureStart = System.nanoTime();
+        run.measuring = true;
+        TimeUnit.NANOSECONDS.sleep(durationNanos);
+        run.measuring = false;
+        run.elapsedNanos = System.nanoTime() - measureStart;
+        run.running = false;
+        for (Future<LatencyRecorder> worker : workers) {
+            run.latencies.add(worker.get());
+        }
+        if (sharedEngine != null) {
+            close(sharedEngine);
+        }
+        return run;
+    }
+
+    private static void eval(ScriptEngine engine, boolean shared, String script, Map<String, Object> vars) throws ScriptException {
+        if (shared) {
+            // JMeter passes new bindings per sample
+            Bindings bindings = new SimpleBindings();
+            bindings.put("vars", vars);
+            engine.eval(script, bindings);
+        } else {
+            engine.eval(script);
+        }
+    }
+
+    private static void close(ScriptEngine engine) throws Exception {
+        if (engine instanceof AutoCloseable) {
+            ((AutoCloseable) engine).close();
+        }
+    }
+
+    private static final class Run {
+        private final LatencyRecorder latencies = new LatencyRecorder();
+        private volatile boolean running = true;
+        private volatile boolean measuring;
+        private volatile String firstError;
+        private long elapsedNanos;
+
+        void firstError(Exception e) {
+            if (firstError == null) {
+                firstError = String.valueOf(e.getMessage());
+            }
+        }
+
+        String toJson(String threadKind, int threads) {
+            double seconds = elapsedNanos / 1e9;
+            String json = "{\"threadKind\": \"" + threadKind + "\", \"threads\": " + threads
+                    + ", \"operations\": " + latencies.getCount()
+                    + ", \"errors\": " + latencies.getErrorCount()
+                    + ", \"opsPerSecond\": " + ForkedBenchmark.format(latencies.getCount() / seconds)
+                    + ", \"p50Micros\": " + ForkedBenchmark.format(latencies.getPercentileMicros(0.5))
+                    + ", \"p90Micros\": " + ForkedBenchmark.format(latencies.getPercentileMicros(0.9))
+                    + ", \"p99Micros\": " + ForkedBenchmark.format(latencies.getPercentileMicros(0.99))
+                    + ", \"p999Micros\": " + ForkedBenchmark.format(latencies.getPercentileMicros(0.999))
+                    + ", \"maxMicros\": " + ForkedBenchmark.format(latencies.getMaxMicros());
+            if (firstError != null) {
+                json += ", \"firstError\": \"" + firstError.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", " ") + "\"";
+            }
+            return json + "}";
+        }
+    }
+}
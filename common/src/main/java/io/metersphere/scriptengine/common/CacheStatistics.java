@@ -0,0 +1,64 @@
+package io.metersphere.scriptengine.common;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hit, miss and eviction counters of one of the caches of a script engine, updated by
+ * {@link LruCache}.
+ */
+public final class CacheStatistics {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CacheStatistics() {
+    }
+
+    void hit() {
+        hits.increment();
+    }
+
+    void miss() {
+        misses.increment();
+    }
+
+    void eviction() {
+        evictions.increment();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the ratio of hits to lookups, or {@code 0} if there were no lookups yet.
+     */
+    public double getHitRate() {
+        long h = getHitCount();
+        long total = h + getMissCount();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Resets all counters to zero.
+     */
+    public void reset() {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d misses=%d evictions=%d hitRate=%.3f", getHitCount(), getMissCount(), getEvictionCount(), getHitRate());
+    }
+}
@@ -0,0 +1,126 @@
+package io.metersphere.scriptengine.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with logarithmic buckets: every power of two is split into
+ * {@value #SUB_BUCKETS} linear buckets, so a percentile is off by at most 1/16 of its value.
+ * Recording does not allocate. Latencies above about two hours fall into the last bucket.
+ * <p>
+ * The bucket layout is also available through the static methods, for single-threaded recorders
+ * that want to report the same percentiles without the atomic updates.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 42;
+    public static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos, boolean error) {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(bucket(value));
+        count.increment();
+        totalNanos.add(value);
+        if (error) {
+            errors.increment();
+        }
+        long max = maxNanos.get();
+        while (value > max && !maxNanos.compareAndSet(max, value)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * Returns the index of the bucket the latency falls into.
+     */
+    public static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public double getMeanNanos() {
+        long n = getCount();
+        return n == 0 ? 0 : (double) totalNanos.sum() / n;
+    }
+
+    /**
+     * Returns the latency below which the given fraction of the recorded latencies lies, as the
+     * middle of its bucket, or {@code 0} if nothing was recorded.
+     */
+    public long getPercentileNanos(double fraction) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        return percentileNanos(counts, total, getMaxNanos(), fraction);
+    }
+
+    /**
+     * Returns the percentile of the given bucket counts, see {@link #getPercentileNanos(double)}.
+     */
+    public static long percentileNanos(long[] counts, long total, long maxNanos, double fraction) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                long low = lowerBound(i);
+                long high = i + 1 < BUCKETS ? lowerBound(i + 1) : low;
+                return Math.min((low + high) / 2, maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        errors.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+}
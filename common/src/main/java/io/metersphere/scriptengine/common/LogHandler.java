@@ -0,0 +1,263 @@
+package io.metersphere.scriptengine.common;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+/**
+ * Log handler of the polyglot engines, installed with {@code Engine.Builder.logHandler}. Logging
+ * threads only put the record into a bounded lock-free queue; a background thread formats the
+ * records and appends them to the log file, so engine logging never blocks script execution on file
+ * I/O. When the queue is full new records are dropped and counted.
+ * <p>
+ * Each engine reads its settings from system properties with its own prefix, {@code graaljs} or
+ * {@code graalpy}. The file is set with {@code <prefix>.log-file} (default {@code <prefix>.log} in
+ * {@code java.io.tmpdir}). Once it grows beyond {@code <prefix>.log-file-max-size} KiB (default
+ * 10240) it is renamed to {@code <file>.1}, older files are shifted up to {@code <file>.<n>} with
+ * n set by {@code <prefix>.log-file-count} (default 1) and a new file is started.
+ * {@code <prefix>.log-queue-size} (default 4096) bounds the number of pending records.
+ * <p>
+ * There is one handler per file, shared by all engines of the JVM. {@link #close()} therefore only
+ * flushes; pending records are also written when the JVM shuts down.
+ */
+public final class LogHandler extends Handler {
+
+    private static final String LOG_FILE_PROPERTY_SUFFIX = ".log-file";
+    private static final String LOG_FILE_MAX_SIZE_PROPERTY_SUFFIX = ".log-file-max-size";
+    private static final String LOG_FILE_COUNT_PROPERTY_SUFFIX = ".log-file-count";
+    private static final String LOG_QUEUE_SIZE_PROPERTY_SUFFIX = ".log-queue-size";
+
+    private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final Map<Path, LogHandler> HANDLERS = new ConcurrentHashMap<>();
+
+    private final Path file;
+    private final long maxFileSize;
+    private final int fileCount;
+    private final int queueSize;
+    private final Queue<LogRecord> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final Thread writer;
+    // only accessed while holding the monitor of this handler
+    private OutputStream stream;
+    private long fileSize;
+
+    private LogHandler(String prefix, Path file, long maxFileSize, int fileCount, int queueSize) {
+        this.file = file;
+        this.maxFileSize = maxFileSize;
+        this.fileCount = fileCount;
+        this.queueSize = queueSize;
+        setFormatter(new LogFormatter());
+        this.writer = new Thread(this::writeLoop, prefix + "-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::drain, prefix + "-log-shutdown"));
+    }
+
+    /**
+     * Returns the handler for the file configured with the {@code <prefix>.log-file} system
+     * property.
+     */
+    public static LogHandler getDefault(String prefix) {
+        String file = System.getProperty(prefix + LOG_FILE_PROPERTY_SUFFIX);
+        return forFile(prefix, file != null ? Paths.get(file) : Paths.get(System.getProperty("java.io.tmpdir"), prefix + ".log"));
+    }
+
+    /**
+     * Returns the handler writing to the given file, creating it with the settings of the given
+     * system property prefix if needed.
+     */
+    public static LogHandler forFile(String prefix, Path file) {
+        return HANDLERS.computeIfAbsent(file.toAbsolutePath().normalize(), f -> new LogHandler(prefix, f,
+                Long.getLong(prefix + LOG_FILE_MAX_SIZE_PROPERTY_SUFFIX, 10240) * 1024,
+                Math.max(0, Integer.getInteger(prefix + LOG_FILE_COUNT_PROPERTY_SUFFIX, 1)),
+                Math.max(1, Integer.getInteger(prefix + LOG_QUEUE_SIZE_PROPERTY_SUFFIX, 4096))));
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of records dropped because the queue was full.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Returns the number of records written to the log file.
+     */
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    /**
+     * Returns the number of records waiting to be written.
+     */
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) {
+            return;
+        }
+        int size = queued.incrementAndGet();
+        if (size > queueSize) {
+            queued.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        queue.offer(record);
+        if (size == 1) {
+            // the writer may be idle
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Wakes up the background writer, which writes all pending records and flushes the file.
+     */
+    @Override
+    public void flush() {
+        LockSupport.unpark(writer);
+    }
+
+    /**
+     * Only flushes, the handler is shared by all engines logging to the same file.
+     */
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private void writeLoop() {
+        while (true) {
+            drain();
+            LockSupport.parkNanos(this, IDLE_WAIT_NANOS);
+        }
+    }
+
+    private synchronized void drain() {
+        LogRecord record;
+        boolean wrote = false;
+        while ((record = queue.poll()) != null) {
+            queued.decrementAndGet();
+            write(record);
+            wrote = true;
+        }
+        if (wrote && stream != null) {
+            try {
+                stream.flush();
+            } catch (IOException e) {
+                reportError("Cannot flush " + file, e, ErrorManager.FLUSH_FAILURE);
+            }
+        }
+    }
+
+    private void write(LogRecord record) {
+        String text;
+        try {
+            text = getFormatter().format(record);
+        } catch (RuntimeException e) {
+            reportError(null, e, ErrorManager.FORMAT_FAILURE);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        try {
+            if (stream == null) {
+                open();
+            } else if (fileSize > 0 && fileSize + bytes.length > maxFileSize) {
+                rotate();
+            }
+            stream.write(bytes);
+            fileSize += bytes.length;
+            written.increment();
+        } catch (IOException e) {
+            closeStream();
+            reportError("Cannot write " + file, e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    private void open() throws IOException {
+        Path parent = file.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        stream = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND), 8192);
+        fileSize = Files.size(file);
+    }
+
+    private void rotate() throws IOException {
+        closeStream();
+        if (fileCount == 0) {
+            Files.deleteIfExists(file);
+        } else {
+            for (int i = fileCount - 1; i > 0; i--) {
+                Path older = backup(i);
+                if (Files.exists(older)) {
+                    Files.move(older, backup(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(file, backup(1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        open();
+    }
+
+    private Path backup(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    private void closeStream() {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                reportError("Cannot close " + file, e, ErrorManager.CLOSE_FAILURE);
+            }
+            stream = null;
+        }
+    }
+
+    /**
+     * Formats records like the default polyglot log output: {@code [logger] LEVEL: message}.
+     */
+    private static final class LogFormatter extends Formatter {
+
+        @Override
+        public String format(LogRecord record) {
+            StringBuilder text = new StringBuilder();
+            text.append('[').append(record.getLoggerName()).append("] ").append(record.getLevel()).append(": ");
+            text.append(formatMessage(record)).append(System.lineSeparator());
+            if (record.getThrown() != null) {
+                StringWriter trace = new StringWriter();
+                record.getThrown().printStackTrace(new PrintWriter(trace));
+                text.append(trace);
+            }
+            return text.toString();
+        }
+    }
+}
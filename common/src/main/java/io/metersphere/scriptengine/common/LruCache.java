@@ -0,0 +1,57 @@
+package io.metersphere.scriptengine.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A small synchronized LRU map that reports to a {@link CacheStatistics}. A capacity of
+ * zero disables caching.
+ */
+public final class LruCache<K, V> {
+
+    private final int capacity;
+    private final CacheStatistics statistics;
+    private final LinkedHashMap<K, V> map;
+
+    public LruCache(int capacity, CacheStatistics statistics) {
+        this.capacity = capacity;
+        this.statistics = statistics;
+        this.map = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > LruCache.this.capacity) {
+                    statistics.eviction();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached value or {@code null}, counting a hit or a miss.
+     */
+    public synchronized V get(K key) {
+        V value = map.get(key);
+        if (value == null) {
+            statistics.miss();
+        } else {
+            statistics.hit();
+        }
+        return value;
+    }
+
+    public synchronized void put(K key, V value) {
+        if (capacity > 0) {
+            map.put(key, value);
+        }
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public synchronized void clear() {
+        map.clear();
+    }
+}
@@ -0,0 +1,54 @@
+package io.metersphere.scriptengine.common;
+
+/**
+ * Wraps a Java map, list or object array that is put into the ENGINE_SCOPE bindings of a script
+ * engine, to have it copied into a native JS object or Python dict instead of being shared as a
+ * host object. The copy is made with a single JSON parse call, so scripts then read the data
+ * without crossing the host interop boundary on every access. Changes made by the script are not
+ * visible in the Java collection and vice versa, and the copy no longer has the Java methods of the
+ * collection.
+ * <p>
+ * Only graphs of maps with string keys, lists, arrays, strings, booleans, finite numbers and
+ * {@code null} with at most {@code maxSize} elements in total are copied. Any other value is bound
+ * as the unwrapped host object.
+ */
+public final class NativeCopy {
+
+    /**
+     * The number of elements copied by {@link #of(Object)} at most.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private final Object value;
+    private final int maxSize;
+
+    private NativeCopy(Object value, int maxSize) {
+        this.value = value;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Copies the value if it has at most {@link #DEFAULT_MAX_SIZE} elements.
+     */
+    public static NativeCopy of(Object value) {
+        return of(value, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Copies the value if it has at most {@code maxSize} elements.
+     */
+    public static NativeCopy of(Object value, int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must not be negative: " + maxSize);
+        }
+        return new NativeCopy(value, maxSize);
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+}
@@ -0,0 +1,21 @@
+package io.metersphere.scriptengine.common;
+
+/**
+ * Where the stdout and stderr output of scripts goes, selected per script engine with
+ * {@code setOutputMode}. Output bytes are counted in every mode.
+ */
+public enum OutputMode {
+    /**
+     * Output is passed to the writers of the ScriptContext.
+     */
+    PASSTHROUGH,
+    /**
+     * Output is only counted.
+     */
+    DISCARD,
+    /**
+     * The last {@code graaljs.output-ring-size} or {@code graalpy.output-ring-size} KiB (default
+     * 64) of output are kept per polyglot context, e.g. to inspect what a failing script printed.
+     */
+    RING
+}
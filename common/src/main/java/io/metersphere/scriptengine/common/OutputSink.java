@@ -0,0 +1,106 @@
+package io.metersphere.scriptengine.common;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The output state shared by the stdout and stderr streams of one polyglot context: the current
+ * {@link OutputMode}, the number of bytes written and, in {@link OutputMode#RING}
+ * mode, a fixed size ring buffer with the last bytes of output. The ring is allocated once, when
+ * the mode is first switched to RING.
+ */
+public final class OutputSink {
+
+    private final int ringSize;
+    private final LongAdder byteCount = new LongAdder();
+    private volatile OutputMode mode;
+    private byte[] ring;
+    // total number of bytes ever put into the ring
+    private long ringWritten;
+
+    public OutputSink(OutputMode mode, int ringSize) {
+        this.ringSize = ringSize;
+        setMode(mode);
+    }
+
+    public OutputMode getMode() {
+        return mode;
+    }
+
+    public void setMode(OutputMode mode) {
+        if (mode == OutputMode.RING) {
+            synchronized (this) {
+                if (ring == null) {
+                    ring = new byte[ringSize];
+                }
+            }
+        }
+        this.mode = mode;
+    }
+
+    public void count(int length) {
+        byteCount.add(length);
+    }
+
+    public long getByteCount() {
+        return byteCount.sum();
+    }
+
+    public synchronized void capture(int b) {
+        ring[(int) (ringWritten++ % ring.length)] = (byte) b;
+    }
+
+    public synchronized void capture(byte[] b, int off, int len) {
+        if (len >= ring.length) {
+            // only the tail fits
+            off += len - ring.length;
+            ringWritten += len - ring.length;
+            len = ring.length;
+        }
+        int start = (int) (ringWritten % ring.length);
+        int first = Math.min(len, ring.length - start);
+        System.arraycopy(b, off, ring, start, first);
+        System.arraycopy(b, off + first, ring, 0, len - first);
+        ringWritten += len;
+    }
+
+    /**
+     * Returns the captured output, oldest first. A character cut in half by the ring boundary is
+     * dropped.
+     */
+    public synchronized String getCapturedOutput() {
+        if (ring == null || ringWritten == 0) {
+            return "";
+        }
+        byte[] bytes;
+        if (ringWritten <= ring.length) {
+            bytes = new byte[(int) ringWritten];
+            System.arraycopy(ring, 0, bytes, 0, bytes.length);
+        } else {
+            bytes = new byte[ring.length];
+            int start = (int) (ringWritten % ring.length);
+            System.arraycopy(ring, start, bytes, 0, ring.length - start);
+            System.arraycopy(ring, 0, bytes, ring.length - start, start);
+        }
+        int off = 0;
+        while (off < bytes.length && (bytes[off] & 0xC0) == 0x80) {
+            off++;
+        }
+        try {
+            return StandardCharsets.UTF_8.newDecoder()
+                            .onMalformedInput(CodingErrorAction.REPLACE)
+                            .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                            .decode(ByteBuffer.wrap(bytes, off, bytes.length - off))
+                            .toString();
+        } catch (CharacterCodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public synchronized void clearCapturedOutput() {
+        ringWritten = 0;
+    }
+}
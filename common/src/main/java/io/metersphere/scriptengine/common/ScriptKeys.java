@@ -0,0 +1,51 @@
+package io.metersphere.scriptengine.common;
+
+import org.graalvm.polyglot.Source;
+
+/**
+ * Names scripts in the statistics and the flight recorder events of a script engine, so that both
+ * report a script under the same name. A source read from a file is named by its path, any other
+ * source by its name followed by a 64-bit FNV-1a hash of its text, which keeps the statistics
+ * from holding on to the text of every script. The hash of a source is computed once and kept
+ * while the source is among the most recently used ones.
+ */
+public final class ScriptKeys {
+
+    private final LruCache<Source, String> keys;
+
+    /**
+     * @param capacity the number of sources whose names are kept, usually the size of the source
+     *                 cache of the engine
+     */
+    public ScriptKeys(int capacity) {
+        this.keys = new LruCache<>(capacity, new CacheStatistics());
+    }
+
+    /**
+     * Returns the path of the source, or its name followed by a hash of its content.
+     */
+    public String of(Source source) {
+        String path = source.getPath();
+        if (path != null) {
+            return path;
+        }
+        String key = keys.get(source);
+        if (key == null) {
+            key = contentKey(source.getName(), source.getCharacters());
+            keys.put(source, key);
+        }
+        return key;
+    }
+
+    /**
+     * Returns the name followed by a 64-bit FNV-1a hash of the text, for scripts that are not
+     * held as a {@link Source}.
+     */
+    public static String contentKey(String name, CharSequence text) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * 0x100000001b3L;
+        }
+        return name + "#" + Long.toHexString(hash);
+    }
+}
@@ -41,18 +41,25 @@
 package io.metersphere.js.scriptengine;
 
 import java.util.AbstractMap;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import javax.script.Bindings;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 
+import io.metersphere.scriptengine.common.LruCache;
+import io.metersphere.scriptengine.common.NativeCopy;
 import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Source;
 import org.graalvm.polyglot.TypeLiteral;
 import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.proxy.ProxyArray;
 import org.graalvm.polyglot.proxy.ProxyObject;
 
 
@@ -67,13 +74,22 @@ final class GraalJSBindings extends AbstractMap<String, Object> implements Bindi
     private Map<String, Object> global;
     private Value deleteProperty;
     private Value clear;
+    private Value putAll;
+    private Value jsonParse;
+    private LruCache<Source, Value> parsedSources;
+    private LruCache<Source, Value> parameterizedFunctions;
+    // GLOBAL_SCOPE bindings last imported into the context and their keys at that time
+    private Bindings importedGlobalBindings;
+    private Set<String> importedGlobalKeys;
+    // returns the builder of the context, asked once, when the builder is first needed
+    private Supplier<Context.Builder> contextConfig;
     private Context.Builder contextBuilder;
     // ScriptContext of the ScriptEngine where these bindings form ENGINE_SCOPE bindings
     private ScriptContext engineScriptContext;
     private ScriptEngine engineBinding;
 
-    GraalJSBindings(Context.Builder contextBuilder, ScriptContext scriptContext, ScriptEngine engine) {
-        this.contextBuilder = contextBuilder;
+    GraalJSBindings(Supplier<Context.Builder> contextConfig, ScriptContext scriptContext, ScriptEngine engine) {
+        this.contextConfig = contextConfig;
         this.engineScriptContext = scriptContext;
         this.engineBinding = engine;
     }
@@ -92,10 +108,19 @@ final class GraalJSBindings extends AbstractMap<String, Object> implements Bindi
     }
 
     private void initContext() {
-        context = GraalJSScriptEngine.createDefaultContext(contextBuilder, engineScriptContext);
+        context = GraalJSScriptEngine.createDefaultContext(getContextBuilder(), engineScriptContext);
+        contextConfig = null;
+        contextBuilder = null;
         initGlobal();
     }
 
+    private Context.Builder getContextBuilder() {
+        if (contextBuilder == null) {
+            contextBuilder = contextConfig.get();
+        }
+        return contextBuilder;
+    }
+
     private void initGlobal() {
         this.global = GraalJSScriptEngine.evalInternal(context, "this").as(STRING_MAP);
         updateEngineBinding();
@@ -144,7 +169,7 @@ final class GraalJSBindings extends AbstractMap<String, Object> implements Bindi
                 if (optionSetter == null) {
                     throw new IllegalArgumentException("unkown graal-js option \"" + name + "\"");
                 } else {
-                    contextBuilder = optionSetter.setOption(contextBuilder, v);
+                    contextBuilder = optionSetter.setOption(getContextBuilder(), v);
                     return true;
                 }
             } else {
@@ -152,13 +177,79 @@ final class GraalJSBindings extends AbstractMap<String, Object> implements Bindi
             }
         }
         requireContext();
-        return global.put(name, v);
+        return global.put(name, importValue(v));
+    }
+
+    private Value jsonParseFunction() {
+        if (this.jsonParse == null) {
+            this.jsonParse = GraalJSScriptEngine.evalInternal(context, "JSON.parse");
+        }
+        return this.jsonParse;
+    }
+
+    /**
+     * Converts a Java collection wrapped in a {@link NativeCopy} into a native JS object, or
+     * unwraps it if it cannot be converted.
+     */
+    private Object importValue(Object value) {
+        if (!(value instanceof NativeCopy)) {
+            return value;
+        }
+        NativeCopy copy = (NativeCopy) value;
+        if (GraalJSCollectionImport.isCollection(copy.getValue())) {
+            String json = GraalJSCollectionImport.toJson(copy.getValue(), copy.getMaxSize());
+            if (json != null) {
+                requireContext();
+                return jsonParseFunction().execute(json);
+            }
+        }
+        return copy.getValue();
+    }
+
+    private Value putAllFunction() {
+        if (this.putAll == null) {
+            this.putAll = GraalJSScriptEngine.evalInternal(context, "(function(obj, keys, values) {for (var i = 0; i < keys.length; i++) {obj[keys[i]] = values[i]}})");
+        }
+        return this.putAll;
+    }
+
+    /**
+     * Sets all entries with a single guest call. Magic {@code polyglot.js.*} options are applied
+     * first, one by one, as by {@link #put}.
+     */
+    @Override
+    public void putAll(Map<? extends String, ? extends Object> toMerge) {
+        Object[] keys = new Object[toMerge.size()];
+        Object[] values = new Object[keys.length];
+        int count = 0;
+        for (Entry<? extends String, ? extends Object> entry : toMerge.entrySet()) {
+            String name = entry.getKey();
+            checkKey(name);
+            if (name.equals(GraalJSScriptEngine.POOLED_CONTEXT)) {
+                // the lease of a pooled context is not visible to scripts
+            } else if (name.startsWith(GraalJSScriptEngine.MAGIC_OPTION_PREFIX)) {
+                put(name, entry.getValue());
+            } else {
+                keys[count] = name;
+                values[count] = importValue(entry.getValue());
+                count++;
+            }
+        }
+        if (count > 0) {
+            requireContext();
+            if (count < keys.length) {
+                keys = Arrays.copyOf(keys, count);
+                values = Arrays.copyOf(values, count);
+            }
+            putAllFunction().execute(global, ProxyArray.fromArray(keys), ProxyArray.fromArray(values));
+        }
     }
 
     @Override
     public void clear() {
         if (context != null) {
             clearFunction().execute(global);
+            invalidateGlobalBindingsImport();
         }
     }
 
@@ -184,6 +275,7 @@ final class GraalJSBindings extends AbstractMap<String, Object> implements Bindi
         requireContext();
         Object prev = get(key);
         deletePropertyFunction().execute(global, key);
+        invalidateGlobalBindingsImport();
         return prev;
     }
 
@@ -192,6 +284,48 @@ final class GraalJSBindings extends AbstractMap<String, Object> implements Bindi
         return context;
     }
 
+    boolean isContextInitialized() {
+        return context != null;
+    }
+
+    /**
+     * Parses the source in the context of these bindings, reusing the executable of an earlier
+     * parse of an equal source.
+     */
+    Value parse(Source source) {
+        requireContext();
+        if (parsedSources == null) {
+            parsedSources = new LruCache<>(GraalJSScriptEngine.SOURCE_CACHE_SIZE, GraalJSScriptEngine.PARSE_CACHE_STATISTICS);
+        }
+        Value executable = parsedSources.get(source);
+        if (executable == null) {
+            GraalJSEvents.ParseEvent event = new GraalJSEvents.ParseEvent();
+            event.begin();
+            executable = context.parse(source);
+            event.report(source);
+            parsedSources.put(source, executable);
+        }
+        return executable;
+    }
+
+    /**
+     * Returns the function of a parameterized script in the context of these bindings, creating it
+     * by executing the wrapper source on first use. The functions are cached here and not by the
+     * script, so that a script does not keep the contexts it ran in alive.
+     */
+    Value parameterizedFunction(Source source) {
+        requireContext();
+        if (parameterizedFunctions == null) {
+            parameterizedFunctions = new LruCache<>(GraalJSScriptEngine.SOURCE_CACHE_SIZE, GraalJSScriptEngine.FUNCTION_CACHE_STATISTICS);
+        }
+        Value function = parameterizedFunctions.get(source);
+        if (function == null) {
+            function = parse(source).execute();
+            parameterizedFunctions.put(source, function);
+        }
+        return function;
+    }
+
     @Override
     public Set<Entry<String, Object>> entrySet() {
         requireContext();
@@ -209,17 +343,58 @@ final class GraalJSBindings extends AbstractMap<String, Object> implements Bindi
         return new IllegalStateException(String.format("failed to set graal-js option \"%s\": js context is already initialized", name));
     }
 
+    /**
+     * Imports the GLOBAL_SCOPE bindings into the context. The import reads values from the live
+     * map, so it is only repeated when a different bindings object is passed or its key set
+     * changed. Detecting a changed key set costs a hash lookup per GLOBAL_SCOPE key but no call
+     * into the context.
+     * <p>
+     * Changes made by a script are not detected: an imported global that a script deletes stays
+     * deleted until the key set of the GLOBAL_SCOPE bindings changes or {@link #remove} or
+     * {@link #clear} is called on these bindings. A script that assigns an imported global
+     * shadows it, exactly as without the skip.
+     */
     void importGlobalBindings(ScriptContext scriptContext) {
         Bindings globalBindings = scriptContext.getBindings(ScriptContext.GLOBAL_SCOPE);
-        if (globalBindings != null && !globalBindings.isEmpty() && this != globalBindings) {
+        if (globalBindings != null && !globalBindings.isEmpty() && this != globalBindings && !isImported(globalBindings)) {
+            GraalJSEvents.GlobalBindingsImportEvent event = new GraalJSEvents.GlobalBindingsImportEvent();
+            event.begin();
             ProxyObject bindingsProxy = ProxyObject.fromMap(Collections.unmodifiableMap(globalBindings));
             getContext().getBindings("js").getMember(SCRIPT_CONTEXT_GLOBAL_BINDINGS_IMPORT_FUNCTION_NAME).execute(bindingsProxy);
+            event.bindings = globalBindings.size();
+            event.commit();
+            importedGlobalBindings = globalBindings;
+            importedGlobalKeys = new HashSet<>(globalBindings.keySet());
         }
     }
 
+    private boolean isImported(Bindings globalBindings) {
+        return globalBindings == importedGlobalBindings && globalBindings.size() == importedGlobalKeys.size() && importedGlobalKeys.containsAll(globalBindings.keySet());
+    }
+
+    /**
+     * Forces the next {@link #importGlobalBindings} to call into the context, e.g. after the
+     * imported properties were deleted from the global object.
+     */
+    void invalidateGlobalBindingsImport() {
+        importedGlobalBindings = null;
+        importedGlobalKeys = null;
+    }
+
     void updateEngineScriptContext(ScriptContext scriptContext) {
         engineScriptContext = scriptContext;
         updateContextBinding();
     }
 
+    /**
+     * Forgets the ScriptContext, including the {@code context} global, so that an idle pooled
+     * context does not keep it reachable.
+     */
+    void clearEngineScriptContext() {
+        engineScriptContext = null;
+        if (context != null) {
+            updateBinding("context", null);
+        }
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+package io.metersphere.js.scriptengine;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.metersphere.scriptengine.common.NativeCopy;
+
+/**
+ * Serializes Java maps, lists and object arrays of JSON-like data wrapped in a {@link NativeCopy}
+ * into JSON text, which {@link GraalJSBindings} turns into native JS objects and arrays with a
+ * single {@code JSON.parse} call. A converted map or list is a plain JS object or array, so it no
+ * longer has the Java methods of the collection: {@code props.put('a', 1)} fails and has to be
+ * written {@code props.a = 1}.
+ * <p>
+ * Only graphs of maps with string keys, lists, arrays, strings, booleans, finite numbers and
+ * {@code null} with at most {@code maxSize} elements in total are converted. Longs outside the range
+ * a JS number represents exactly ({@code Number.MIN_SAFE_INTEGER} to {@code Number.MAX_SAFE_INTEGER})
+ * are not. Anything else, e.g. a nested bean or a cycle, keeps the whole value a host object.
+ */
+final class GraalJSCollectionImport {
+
+    private static final long MAX_SAFE_INTEGER = (1L << 53) - 1;
+
+    private final int maxSize;
+    private final StringBuilder json = new StringBuilder();
+    private final IdentityHashMap<Object, Boolean> path = new IdentityHashMap<>();
+    private int size;
+
+    private GraalJSCollectionImport(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    static boolean isCollection(Object value) {
+        return value instanceof Map || value instanceof List || value instanceof Object[];
+    }
+
+    /**
+     * Returns the JSON text of the value, or {@code null} if it cannot be imported.
+     */
+    static String toJson(Object value, int maxSize) {
+        GraalJSCollectionImport writer = new GraalJSCollectionImport(maxSize);
+        return writer.write(value) ? writer.json.toString() : null;
+    }
+
+    private boolean write(Object value) {
+        if (value == null) {
+            json.append("null");
+        } else if (value instanceof String) {
+            writeString((String) value);
+        } else if (value instanceof Long) {
+            long l = (Long) value;
+            if (l > MAX_SAFE_INTEGER || l < -MAX_SAFE_INTEGER) {
+                return false;
+            }
+            json.append(l);
+        } else if (value instanceof Boolean || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            json.append(value);
+        } else if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                return false;
+            }
+            json.append(d);
+        } else if (isCollection(value)) {
+            if (path.put(value, Boolean.TRUE) != null) {
+                return false;
+            }
+            boolean written = value instanceof Map ? writeMap((Map<?, ?>) value) : writeArray(value);
+            path.remove(value);
+            return written;
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private boolean writeMap(Map<?, ?> map) {
+        json.append('{');
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (!(entry.getKey() instanceof String) || ++size > maxSize) {
+                return false;
+            }
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            writeString((String) entry.getKey());
+            json.append(':');
+            if (!write(entry.getValue())) {
+                return false;
+            }
+        }
+        json.append('}');
+        return true;
+    }
+
+    private boolean writeArray(Object array) {
+        json.append('[');
+        if (array instanceof List) {
+            boolean first = true;
+            for (Object element : (List<?>) array) {
+                if (++size > maxSize) {
+                    return false;
+                }
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                if (!write(element)) {
+                    return false;
+                }
+            }
+        } else {
+            Object[] elements = (Object[]) array;
+            for (int i = 0; i < elements.length; i++) {
+                if (++size > maxSize) {
+                    return false;
+                }
+                if (i > 0) {
+                    json.append(',');
+                }
+                if (!write(elements[i])) {
+                    return false;
+                }
+            }
+        }
+        json.append(']');
+        return true;
+    }
+
+    private void writeString(String s) {
+        json.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
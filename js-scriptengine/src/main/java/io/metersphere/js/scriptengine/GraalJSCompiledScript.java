@@ -0,0 +1,69 @@
+package io.metersphere.js.scriptengine;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptException;
+
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+
+/**
+ * A script compiled by {@link GraalJSScriptEngine#compile(String)}. Besides the JSR-223
+ * {@code eval} methods, the result can be obtained as a {@link Value} or converted to a requested
+ * type without materializing a generic Java object.
+ */
+public final class GraalJSCompiledScript extends CompiledScript {
+
+    private final GraalJSScriptEngine engine;
+    private final Source source;
+
+    GraalJSCompiledScript(GraalJSScriptEngine engine, Source source) {
+        this.engine = engine;
+        this.source = source;
+    }
+
+    @Override
+    public Object eval(ScriptContext ctx) throws ScriptException {
+        return engine.eval(source, ctx, GraalJSScriptEngine.TO_OBJECT);
+    }
+
+    /**
+     * Evaluates the script and returns the result without any conversion, see
+     * {@link GraalJSScriptEngine#evalToValue(String, ScriptContext)}.
+     */
+    public Value evalToValue(ScriptContext ctx) throws ScriptException {
+        return engine.eval(source, ctx, GraalJSScriptEngine.TO_VALUE);
+    }
+
+    /**
+     * Evaluates the script and copies the result into plain Java objects, see
+     * {@link GraalJSValueExporter}.
+     */
+    public Object evalToJava(ScriptContext ctx) throws ScriptException {
+        return engine.eval(source, ctx, GraalJSValueExporter::export);
+    }
+
+    /**
+     * Evaluates the script in the default ScriptContext of the engine and converts the result to
+     * the given type.
+     *
+     * @throws ClassCastException if the result cannot be converted
+     */
+    public <T> T evalAs(Class<T> type) throws ScriptException {
+        return evalAs(engine.getContext(), type);
+    }
+
+    /**
+     * Evaluates the script and converts the result to the given type, see {@link Value#as(Class)}.
+     *
+     * @throws ClassCastException if the result cannot be converted
+     */
+    public <T> T evalAs(ScriptContext ctx, Class<T> type) throws ScriptException {
+        return engine.eval(source, ctx, value -> value.as(type));
+    }
+
+    @Override
+    public GraalJSScriptEngine getEngine() {
+        return engine;
+    }
+}
@@ -0,0 +1,295 @@
+package io.metersphere.js.scriptengine;
+
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.proxy.ProxyArray;
+
+/**
+ * A bounded pool of initialized polyglot contexts used by {@link GraalJSScriptEngine} for
+ * {@link javax.script.ScriptContext} instances whose ENGINE_SCOPE bindings are not
+ * {@link GraalJSBindings} (e.g. a fresh {@link javax.script.SimpleScriptContext} per JMeter
+ * sample). Contexts are keyed by the magic {@code polyglot.js.*} options they were built with, so
+ * a context is only handed out to callers that request the same configuration.
+ * <p>
+ * A context is leased to the ENGINE_SCOPE bindings it was first used with: every later eval or
+ * invoke with the same bindings runs in the same context, so functions and variables defined by
+ * an init script are still there for the main script and {@code invokeFunction}. A thread holds
+ * at most one lease: the context is returned as soon as the thread that used it last evaluates in
+ * a ScriptContext with other ENGINE_SCOPE bindings, e.g. on the next JMeter sample, or right away
+ * by {@link GraalJSScriptEngine#releaseContext(javax.script.ScriptContext)}. The number of leased
+ * contexts is therefore bounded by the number of threads using the engine. Bindings that become
+ * unreachable before either happens return their context from the cleaner thread.
+ * <p>
+ * On return the global object and the builtin constructors and prototypes listed in
+ * {@code RESET_FUNCTION} are reset to the properties they had right after initialization. Top-level
+ * {@code var} and {@code function} declarations cannot be deleted and are set to
+ * {@code undefined} instead. Top-level {@code let}, {@code const} and {@code class} declarations
+ * live outside the global object and cannot be removed at all, so a context in which a script
+ * declared one is closed instead of being reused; otherwise the next script declaring the same
+ * name would fail. The same holds for a context whose builtins cannot be restored, e.g. because
+ * the script froze a prototype. State that is only reachable through other objects, e.g. a
+ * property added to {@code Intl}, is not detected.
+ */
+public final class GraalJSContextPool implements AutoCloseable {
+
+    private static final String RESET_FUNCTION = "(function(global) {" +
+                    "var builtins = ['Object', 'Function', 'Array', 'String', 'Number', 'Boolean', 'Symbol', 'BigInt', 'Date', 'RegExp'," +
+                    "    'Error', 'Promise', 'Map', 'Set', 'WeakMap', 'WeakSet', 'JSON', 'Math', 'Reflect'];" +
+                    "var targets = [global];" +
+                    "builtins.forEach(function(name) {" +
+                    "    var builtin = global[name];" +
+                    "    if (builtin) {" +
+                    "        targets.push(builtin);" +
+                    "        if (builtin.prototype) { targets.push(builtin.prototype); }" +
+                    "    }" +
+                    "});" +
+                    "var snapshots = targets.map(function(target) {" +
+                    "    var descriptors = new Map();" +
+                    "    Reflect.ownKeys(target).forEach(function(key) { descriptors.set(key, Object.getOwnPropertyDescriptor(target, key)); });" +
+                    "    return descriptors;" +
+                    "});" +
+                    "function same(a, b) {" +
+                    "    return Object.is(a.value, b.value) && a.get === b.get && a.set === b.set && a.writable === b.writable" +
+                    "        && a.enumerable === b.enumerable && a.configurable === b.configurable;" +
+                    "}" +
+                    "return function(names) {" +
+                    "    for (var n = 0; n < names.length; n++) {" +
+                    "        if (!Object.prototype.hasOwnProperty.call(global, names[n])) { throw new Error('lexical declaration ' + names[n]); }" +
+                    "    }" +
+                    "    for (var t = 0; t < targets.length; t++) {" +
+                    "        var target = targets[t];" +
+                    "        var baseline = snapshots[t];" +
+                    "        if (!Object.isExtensible(target)) { throw new Error('builtin was frozen'); }" +
+                    "        var keys = Reflect.ownKeys(target);" +
+                    "        for (var i = 0; i < keys.length; i++) {" +
+                    "            var key = keys[i];" +
+                    "            if (!baseline.has(key) && !Reflect.deleteProperty(target, key)) {" +
+                    "                if (target !== global) { throw new Error('cannot delete ' + String(key)); }" +
+                    "                try { global[key] = undefined; } catch (e) {}" +
+                    "            }" +
+                    "        }" +
+                    "        baseline.forEach(function(descriptor, key) {" +
+                    "            var current = Object.getOwnPropertyDescriptor(target, key);" +
+                    "            if ((!current || !same(current, descriptor)) && !Reflect.defineProperty(target, key, descriptor)) {" +
+                    "                throw new Error('cannot restore ' + String(key));" +
+                    "            }" +
+                    "        });" +
+                    "    }" +
+                    "};" +
+                    "})(this)";
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final int maxIdlePerKey;
+    private final Map<Map<String, Object>, BlockingQueue<PooledContext>> idle = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder returns = new LongAdder();
+    private final LongAdder discards = new LongAdder();
+    private volatile boolean closed;
+
+    GraalJSContextPool(int maxIdlePerKey) {
+        this.maxIdlePerKey = maxIdlePerKey;
+    }
+
+    /**
+     * Returns {@code true} if contexts are pooled, i.e. the pool size is positive.
+     */
+    public boolean isEnabled() {
+        return maxIdlePerKey > 0;
+    }
+
+    /**
+     * Returns the maximum number of idle contexts kept per configuration.
+     */
+    public int getMaxIdlePerKey() {
+        return maxIdlePerKey;
+    }
+
+    /**
+     * Returns the number of checkouts served by an idle pooled context.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of checkouts that had to build a new context.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of contexts that were reset and put back into the pool.
+     */
+    public long getReturnCount() {
+        return returns.sum();
+    }
+
+    /**
+     * Returns the number of contexts closed on return because the pool was full, closed or the
+     * context could not be reset.
+     */
+    public long getDiscardCount() {
+        return discards.sum();
+    }
+
+    /**
+     * Returns the number of contexts currently idle in the pool.
+     */
+    public int getIdleCount() {
+        int count = 0;
+        for (BlockingQueue<PooledContext> queue : idle.values()) {
+            count += queue.size();
+        }
+        return count;
+    }
+
+    /**
+     * Checks out a context and leases it to {@code owner}, which must not be reachable from the
+     * context, see {@link Lease}.
+     */
+    Lease lease(Object owner, Map<String, Object> key, Supplier<GraalJSBindings> bindingsFactory) {
+        PooledContext pooled = checkout(key, bindingsFactory);
+        return new Lease(pooled, CLEANER.register(owner, () -> checkin(pooled)));
+    }
+
+    private PooledContext checkout(Map<String, Object> key, Supplier<GraalJSBindings> bindingsFactory) {
+        BlockingQueue<PooledContext> queue = idle.get(key);
+        PooledContext pooled = queue == null ? null : queue.poll();
+        if (pooled != null) {
+            hits.increment();
+            return pooled;
+        }
+        misses.increment();
+        GraalJSBindings bindings = bindingsFactory.get();
+        Value reset = GraalJSScriptEngine.evalInternal(bindings.getContext(), RESET_FUNCTION);
+        return new PooledContext(key, bindings, reset);
+    }
+
+    private void checkin(PooledContext pooled) {
+        if (!closed) {
+            try {
+                // an idle context must not keep the ScriptContext of its last user alive
+                pooled.bindings.clearEngineScriptContext();
+                // the global bindings also list top-level lexical declarations, the global object does not
+                Value globalBindings = pooled.bindings.getContext().getBindings("js");
+                pooled.reset.executeVoid(ProxyArray.fromList(new ArrayList<>(globalBindings.getMemberKeys())));
+                pooled.bindings.invalidateGlobalBindingsImport();
+                if (idle.computeIfAbsent(pooled.key, k -> new ArrayBlockingQueue<>(maxIdlePerKey)).offer(pooled)) {
+                    returns.increment();
+                    return;
+                }
+            } catch (PolyglotException | IllegalStateException e) {
+                // the context was cancelled or closed by the script, it cannot be reused
+            }
+        }
+        discards.increment();
+        pooled.close();
+    }
+
+    /**
+     * Closes all idle contexts. Contexts checked out at the time of closing are closed when they
+     * are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (BlockingQueue<PooledContext> queue : idle.values()) {
+            PooledContext pooled;
+            while ((pooled = queue.poll()) != null) {
+                pooled.close();
+            }
+        }
+    }
+
+    /**
+     * A context checked out for the ENGINE_SCOPE bindings it is stored in. It is returned to the
+     * pool by {@link #release()}, by {@link #releaseIfLastUser()} or when the bindings become
+     * unreachable, which is why the context must not keep a reference to them, or to the
+     * ScriptContext holding them, between calls.
+     */
+    static final class Lease {
+        private final PooledContext pooled;
+        private final Cleaner.Cleanable cleanable;
+        private Thread lastUser = Thread.currentThread();
+        private boolean released;
+
+        private Lease(PooledContext pooled, Cleaner.Cleanable cleanable) {
+            this.pooled = pooled;
+            this.cleanable = cleanable;
+        }
+
+        GraalJSBindings getBindings() {
+            return pooled.bindings;
+        }
+
+        /**
+         * Records the current thread as the last user of the context. Returns {@code false} if the
+         * lease was already released and its context must not be used any more.
+         */
+        synchronized boolean use() {
+            if (released) {
+                return false;
+            }
+            lastUser = Thread.currentThread();
+            return true;
+        }
+
+        synchronized boolean isReleased() {
+            return released;
+        }
+
+        /**
+         * Returns the context to the pool unless another thread used it after the current one.
+         */
+        void releaseIfLastUser() {
+            synchronized (this) {
+                if (released || lastUser != Thread.currentThread()) {
+                    return;
+                }
+                released = true;
+            }
+            cleanable.clean();
+        }
+
+        /**
+         * Returns the context to the pool. Only the first call has an effect.
+         */
+        void release() {
+            synchronized (this) {
+                released = true;
+            }
+            cleanable.clean();
+        }
+    }
+
+    static final class PooledContext {
+        private final Map<String, Object> key;
+        private final GraalJSBindings bindings;
+        private final Value reset;
+
+        private PooledContext(Map<String, Object> key, GraalJSBindings bindings, Value reset) {
+            this.key = key;
+            this.bindings = bindings;
+            this.reset = reset;
+        }
+
+        private void close() {
+            try {
+                bindings.close();
+            } catch (IllegalStateException e) {
+                // still in use by a cancelled evaluation
+            }
+        }
+    }
+}
@@ -44,8 +44,8 @@ import org.graalvm.polyglot.Engine;
 
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineFactory;
-import java.lang.ref.WeakReference;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 public final class GraalJSEngineFactory implements ScriptEngineFactory {
@@ -59,12 +59,11 @@ public final class GraalJSEngineFactory implements ScriptEngineFactory {
             "Graal.js", "graal.js", "Graal-js", "graal-js", "Graal.JS", "Graal-JS", "GraalJS", "GraalJSPolyglot");
     private static final List<String> MIME_TYPES = List.of("application/javascript", "application/ecmascript", "text/javascript", "text/ecmascript");
     private static final List<String> EXTENSIONS = List.of("js", "mjs");
+    private static final Map<String, String> DEFAULT_ENGINE_OPTIONS = Map.of("engine.WarnInterpreterOnly", "false");
 
-    private WeakReference<Engine> defaultEngine;
     private final Engine userDefinedEngine;
 
     public GraalJSEngineFactory() {
-        this.defaultEngine = null; // lazy
         this.userDefinedEngine = null;
     }
 
@@ -72,23 +71,36 @@ public final class GraalJSEngineFactory implements ScriptEngineFactory {
         this.userDefinedEngine = engine;
     }
 
-    private static Engine createDefaultEngine() {
-        return Engine.newBuilder().allowExperimentalOptions(true).option("engine.WarnInterpreterOnly", "false").build();
-    }
-
     /**
-     * Returns the underlying polyglot engine.
+     * Returns the underlying polyglot engine. Unless the factory was created for a user defined
+     * engine, this is the default engine pinned in the {@link GraalJSEngineRegistry}, which is
+     * shared by all factories of the JVM and kept alive until {@link #releasePolyglotEngine()}.
      */
     public Engine getPolyglotEngine() {
         if (userDefinedEngine != null) {
             return userDefinedEngine;
         } else {
-            Engine engine = defaultEngine == null ? null : defaultEngine.get();
-            if (engine == null) {
-                engine = createDefaultEngine();
-                defaultEngine = new WeakReference<>(engine);
-            }
-            return engine;
+            return GraalJSEngineRegistry.acquire(DEFAULT_ENGINE_OPTIONS);
+        }
+    }
+
+    /**
+     * Returns the default engine like {@link #getPolyglotEngine()} and keeps it open for
+     * {@code user} until the use is ended, or {@code null} for a user defined engine.
+     */
+    GraalJSEngineRegistry.Use usePolyglotEngine(Object user) {
+        return userDefinedEngine == null ? GraalJSEngineRegistry.use(DEFAULT_ENGINE_OPTIONS, user) : null;
+    }
+
+    /**
+     * Unpins the default engine, e.g. at the end of a test run. The next call to
+     * {@link #getPolyglotEngine()} creates a new engine. Script engines created before keep
+     * running on the old engine, which is closed when the last of them is closed or garbage
+     * collected. Has no effect for a user defined engine.
+     */
+    public void releasePolyglotEngine() {
+        if (userDefinedEngine == null) {
+            GraalJSEngineRegistry.release(DEFAULT_ENGINE_OPTIONS);
         }
     }
 
@@ -0,0 +1,164 @@
+package io.metersphere.js.scriptengine;
+
+import java.lang.ref.Cleaner;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.metersphere.scriptengine.common.LogHandler;
+import org.graalvm.polyglot.Engine;
+
+/**
+ * JVM-wide registry of polyglot engines keyed by their engine options. Registered engines are
+ * strongly referenced until they are explicitly {@link #release(Map) released}, so the compiled
+ * code they hold survives garbage collections between test phases.
+ * <p>
+ * Script engines built on a registered engine count as its users. Releasing an engine only
+ * unregisters it; it is closed once its last user is closed or garbage collected, so script
+ * engines that are still in use keep working on the released engine while new ones get a new
+ * engine.
+ */
+public final class GraalJSEngineRegistry {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+    private static final Map<Map<String, String>, Registration> ENGINES = new ConcurrentHashMap<>();
+    private static final Map<Map<String, String>, AtomicInteger> CREATIONS = new ConcurrentHashMap<>();
+
+    private GraalJSEngineRegistry() {
+    }
+
+    /**
+     * Returns the pinned engine for the given options, creating it if needed.
+     */
+    public static Engine acquire(Map<String, String> options) {
+        return register(options).engine;
+    }
+
+    private static Registration register(Map<String, String> options) {
+        return ENGINES.computeIfAbsent(Map.copyOf(options), GraalJSEngineRegistry::createRegistration);
+    }
+
+    private static Registration createRegistration(Map<String, String> options) {
+        CREATIONS.computeIfAbsent(options, k -> new AtomicInteger()).incrementAndGet();
+        return new Registration(Engine.newBuilder().allowExperimentalOptions(true).options(options).logHandler(LogHandler.getDefault("graaljs")).build());
+    }
+
+    /**
+     * Returns the pinned engine for the given options like {@link #acquire(Map)} and counts
+     * {@code user} as a user of it until {@link Use#end()} is called or the user becomes
+     * unreachable. The engine is not closed while it has users.
+     */
+    static Use use(Map<String, String> options, Object user) {
+        while (true) {
+            Registration registration = register(options);
+            if (registration.addUser()) {
+                return new Use(registration.engine, CLEANER.register(user, registration::removeUser));
+            }
+            // released concurrently, retry with the engine registered after it
+            ENGINES.remove(Map.copyOf(options), registration);
+        }
+    }
+
+    /**
+     * Unpins the engine for the given options, so that the next {@link #acquire(Map)} creates a
+     * new one. The engine is closed right away if no script engine uses it, otherwise when the
+     * last one is closed or garbage collected; contexts of the engine that are not executing are
+     * closed with it. Returns {@code false} if no engine was registered for the options.
+     */
+    public static boolean release(Map<String, String> options) {
+        Registration registration = ENGINES.remove(Map.copyOf(options));
+        if (registration == null) {
+            return false;
+        }
+        registration.release();
+        return true;
+    }
+
+    /**
+     * Returns the number of currently pinned engines.
+     */
+    public static int getEngineCount() {
+        return ENGINES.size();
+    }
+
+    /**
+     * Returns how many times an engine was built for the given options.
+     */
+    public static int getCreationCount(Map<String, String> options) {
+        AtomicInteger count = CREATIONS.get(Map.copyOf(options));
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Returns how many engines were built again for options that had an engine before, summed
+     * over all options. Every re-creation means that previously compiled code was lost.
+     */
+    public static int getRecreationCount() {
+        int count = 0;
+        for (AtomicInteger creations : CREATIONS.values()) {
+            count += creations.get() - 1;
+        }
+        return count;
+    }
+
+    /**
+     * The use of a registered engine by one script engine, see {@link #use(Map, Object)}.
+     */
+    static final class Use {
+        private final Engine engine;
+        private final Cleaner.Cleanable cleanable;
+
+        private Use(Engine engine, Cleaner.Cleanable cleanable) {
+            this.engine = engine;
+            this.cleanable = cleanable;
+        }
+
+        Engine getEngine() {
+            return engine;
+        }
+
+        /**
+         * Stops using the engine. Only the first call has an effect.
+         */
+        void end() {
+            cleanable.clean();
+        }
+    }
+
+    private static final class Registration {
+        private final Engine engine;
+        private int users;
+        private boolean released;
+
+        Registration(Engine engine) {
+            this.engine = engine;
+        }
+
+        synchronized boolean addUser() {
+            if (released) {
+                return false;
+            }
+            users++;
+            return true;
+        }
+
+        void removeUser() {
+            synchronized (this) {
+                if (--users > 0 || !released) {
+                    return;
+                }
+            }
+            engine.close();
+        }
+
+        void release() {
+            synchronized (this) {
+                released = true;
+                if (users > 0) {
+                    return;
+                }
+            }
+            engine.close();
+        }
+    }
+}
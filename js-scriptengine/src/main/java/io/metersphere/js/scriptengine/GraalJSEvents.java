@@ -0,0 +1,136 @@
+package io.metersphere.js.scriptengine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import org.graalvm.polyglot.Source;
+
+/**
+ * JDK Flight Recorder events of {@link GraalJSScriptEngine}, so that script time shows up next to
+ * GC, lock and I/O events in a recording. The events are disabled by default and enabled in a JFR
+ * settings file or on the command line, e.g.
+ * {@code -XX:StartFlightRecording:+io.metersphere.js.Eval#enabled=true}. A disabled event costs an
+ * allocation that the JIT removes and a flag check. The emitting thread is part of every event.
+ */
+final class GraalJSEvents {
+
+    private static final String CATEGORY = "MeterSphere";
+    private static final String SUB_CATEGORY = "JavaScript";
+
+    private GraalJSEvents() {
+    }
+
+    /**
+     * Returns the name the script statistics use for the source.
+     */
+    static String sourceName(Source source) {
+        return GraalJSScriptEngine.SCRIPT_KEYS.of(source);
+    }
+
+    @Name("io.metersphere.js.ContextCreate")
+    @Label("JS Context Create")
+    @Description("Build of a polyglot context")
+    @Category({CATEGORY, SUB_CATEGORY})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class ContextCreateEvent extends Event {
+    }
+
+    @Name("io.metersphere.js.Parse")
+    @Label("JS Parse")
+    @Description("Parse of a source that was not in the parse cache of the context")
+    @Category({CATEGORY, SUB_CATEGORY})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class ParseEvent extends Event {
+        @Label("Source")
+        String source;
+
+        void report(Source parsed) {
+            if (shouldCommit()) {
+                source = sourceName(parsed);
+                commit();
+            }
+        }
+    }
+
+    @Name("io.metersphere.js.Eval")
+    @Label("JS Eval")
+    @Description("Evaluation of a script, including context checkout, bindings import and result conversion")
+    @Category({CATEGORY, SUB_CATEGORY})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class EvalEvent extends Event {
+        @Label("Source")
+        String source;
+        @Label("Failed")
+        boolean failed;
+
+        void report(Source evaluated, boolean evalFailed) {
+            if (shouldCommit()) {
+                source = sourceName(evaluated);
+                failed = evalFailed;
+                commit();
+            }
+        }
+    }
+
+    @Name("io.metersphere.js.Invoke")
+    @Label("JS Invoke")
+    @Description("Call of a script function by invokeFunction, invokeMethod, a prepared function or a parameterized script")
+    @Category({CATEGORY, SUB_CATEGORY})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class InvokeEvent extends Event {
+        @Label("Function")
+        String function;
+        @Label("Failed")
+        boolean failed;
+
+        void report(String name, boolean invokeFailed) {
+            if (shouldCommit()) {
+                function = name;
+                failed = invokeFailed;
+                commit();
+            }
+        }
+
+        void report(Source script, boolean invokeFailed) {
+            if (shouldCommit()) {
+                function = sourceName(script);
+                failed = invokeFailed;
+                commit();
+            }
+        }
+    }
+
+    @Name("io.metersphere.js.GlobalBindingsImport")
+    @Label("JS Global Bindings Import")
+    @Description("Import of the GLOBAL_SCOPE bindings into a context")
+    @Category({CATEGORY, SUB_CATEGORY})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class GlobalBindingsImportEvent extends Event {
+        @Label("Bindings")
+        int bindings;
+    }
+
+    @Name("io.metersphere.js.ScriptException")
+    @Label("JS Script Exception")
+    @Description("Conversion of a guest or host exception into a ScriptException")
+    @Category({CATEGORY, SUB_CATEGORY})
+    @Enabled(false)
+    static final class ScriptExceptionEvent extends Event {
+        @Label("Source")
+        String source;
+        @Label("Message")
+        String message;
+        @Label("Host Exception")
+        boolean hostException;
+    }
+}
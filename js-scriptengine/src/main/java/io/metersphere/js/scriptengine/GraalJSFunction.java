@@ -0,0 +1,82 @@
+package io.metersphere.js.scriptengine;
+
+import javax.script.ScriptException;
+
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.Value;
+
+/**
+ * A global function of a {@link GraalJSScriptEngine} resolved once by
+ * {@link GraalJSScriptEngine#prepareFunction(String)}. Invoking the handle skips the bindings
+ * lookup and global bindings import that {@link GraalJSScriptEngine#invokeFunction(String, Object...)}
+ * performs on every call. The handle keeps calling the function it was prepared with, even if the
+ * global is redefined later.
+ */
+public final class GraalJSFunction {
+
+    private final String name;
+    private final Value function;
+
+    GraalJSFunction(String name, Value function) {
+        this.name = name;
+        this.function = function;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Calls the function and converts the result like {@code invokeFunction} does.
+     */
+    public Object invoke(Object... args) throws ScriptException {
+        return invokeValue(args).as(Object.class);
+    }
+
+    /**
+     * Calls the function and returns the result without any conversion.
+     */
+    public Value invokeValue(Object... args) throws ScriptException {
+        GraalJSEvents.InvokeEvent event = new GraalJSEvents.InvokeEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long startCpu = GraalJSScriptEngine.SCRIPT_STATISTICS.threadCpuTime();
+        long startAllocated = GraalJSScriptEngine.SCRIPT_STATISTICS.threadAllocatedBytes();
+        boolean failed = true;
+        try {
+            Value result = function.execute(args);
+            failed = false;
+            return result;
+        } catch (PolyglotException e) {
+            throw GraalJSScriptEngine.toScriptException(e);
+        } finally {
+            GraalJSScriptEngine.SCRIPT_STATISTICS.record(GraalJSScriptStatistics.Operation.INVOKE, name, start, startCpu, startAllocated, failed);
+            event.report(name, failed);
+        }
+    }
+
+    /**
+     * Calls the function and converts the result to the given type.
+     *
+     * @throws ClassCastException if the result cannot be converted
+     */
+    public <T> T invokeAs(Class<T> type, Object... args) throws ScriptException {
+        return invokeValue(args).as(type);
+    }
+
+    public boolean invokeBoolean(Object... args) throws ScriptException {
+        return invokeValue(args).asBoolean();
+    }
+
+    public long invokeLong(Object... args) throws ScriptException {
+        return invokeValue(args).asLong();
+    }
+
+    public double invokeDouble(Object... args) throws ScriptException {
+        return invokeValue(args).asDouble();
+    }
+
+    public String invokeString(Object... args) throws ScriptException {
+        return invokeValue(args).asString();
+    }
+}
@@ -0,0 +1,83 @@
+package io.metersphere.js.scriptengine;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+
+/**
+ * A script compiled as the body of a JS function with named parameters, see
+ * {@link GraalJSScriptEngine#compile(String, String...)}. Inputs are passed as call arguments
+ * instead of being written to global variables before every evaluation.
+ */
+public final class GraalJSParameterizedScript extends CompiledScript {
+
+    private final GraalJSScriptEngine engine;
+    private final Source source;
+    private final String[] parameterNames;
+
+    GraalJSParameterizedScript(GraalJSScriptEngine engine, Source source, String[] parameterNames) {
+        this.engine = engine;
+        this.source = source;
+        this.parameterNames = parameterNames;
+    }
+
+    Source getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the declared parameter names in positional order.
+     */
+    public String[] getParameterNames() {
+        return parameterNames.clone();
+    }
+
+    /**
+     * Calls the script in the default ScriptContext of the engine with positional arguments.
+     */
+    public Object invoke(Object... args) throws ScriptException {
+        return engine.invokeParameterized(this, engine.getContext(), args, GraalJSScriptEngine.TO_OBJECT);
+    }
+
+    /**
+     * Calls the script like {@link #invoke(Object...)} and returns the result without any
+     * conversion.
+     */
+    public Value invokeValue(Object... args) throws ScriptException {
+        return engine.invokeParameterized(this, engine.getContext(), args, GraalJSScriptEngine.TO_VALUE);
+    }
+
+    /**
+     * Calls the script like {@link #invoke(Object...)} and converts the result to the given type.
+     *
+     * @throws ClassCastException if the result cannot be converted
+     */
+    public <T> T invokeAs(Class<T> type, Object... args) throws ScriptException {
+        return engine.invokeParameterized(this, engine.getContext(), args, value -> value.as(type));
+    }
+
+    /**
+     * Calls the script with the values of the attributes named like the parameters.
+     */
+    @Override
+    public Object eval(ScriptContext context) throws ScriptException {
+        Object[] args = new Object[parameterNames.length];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = context.getAttribute(parameterNames[i]);
+        }
+        return engine.invokeParameterized(this, context, args, GraalJSScriptEngine.TO_OBJECT);
+    }
+
+    @Override
+    public ScriptEngine getEngine() {
+        return engine;
+    }
+
+    Value getFunction(GraalJSBindings bindings) {
+        return bindings.parameterizedFunction(source);
+    }
+}
@@ -52,18 +52,31 @@ import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import javax.script.AbstractScriptEngine;
 import javax.script.Bindings;
 import javax.script.Compilable;
-import javax.script.CompiledScript;
 import javax.script.Invocable;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptException;
 
+import io.metersphere.scriptengine.common.CacheStatistics;
+import io.metersphere.scriptengine.common.LogHandler;
+import io.metersphere.scriptengine.common.LruCache;
+import io.metersphere.scriptengine.common.OutputMode;
+import io.metersphere.scriptengine.common.OutputSink;
+import io.metersphere.scriptengine.common.ScriptKeys;
 import org.graalvm.collections.EconomicMap;
 import org.graalvm.collections.EconomicSet;
 import org.graalvm.polyglot.Context;
@@ -86,6 +99,7 @@ public final class GraalJSScriptEngine extends AbstractScriptEngine implements C
 
     private static final String ID = "js";
     private static final String POLYGLOT_CONTEXT = "polyglot.context";
+    static final String POOLED_CONTEXT = "polyglot.pooled-context";
     private static final String OUT_SYMBOL = "$$internal.out$$";
     private static final String IN_SYMBOL = "$$internal.in$$";
     private static final String ERR_SYMBOL = "$$internal.err$$";
@@ -97,6 +111,10 @@ public final class GraalJSScriptEngine extends AbstractScriptEngine implements C
     private static final String JS_CHARSET_OPTION = "js.charset";
     private static final String NASHORN_COMPATIBILITY_MODE_SYSTEM_PROPERTY = "polyglot.js.nashorn-compat";
     private static final String INSECURE_SCRIPTENGINE_ACCESS_SYSTEM_PROPERTY = "graaljs.insecure-scriptengine-access";
+    private static final String CONTEXT_POOL_SIZE_SYSTEM_PROPERTY = "graaljs.context-pool-size";
+    private static final String SOURCE_CACHE_SIZE_SYSTEM_PROPERTY = "graaljs.source-cache-size";
+    private static final String OUTPUT_MODE_SYSTEM_PROPERTY = "graaljs.output-mode";
+    private static final String OUTPUT_RING_SIZE_SYSTEM_PROPERTY = "graaljs.output-ring-size";
     static final String MAGIC_OPTION_PREFIX = "polyglot.js.";
 
     private static final HostAccess NASHORN_HOST_ACCESS = createNashornHostAccess();
@@ -294,6 +312,24 @@ public final class GraalJSScriptEngine extends AbstractScriptEngine implements C
     private static final EconomicSet<String> MAGIC_BINDINGS_OPTION_KEYS = EconomicSet.create();
     static final EconomicMap<String, MagicBindingsOptionSetter> MAGIC_BINDINGS_OPTION_MAP = EconomicMap.create();
     private static final boolean NASHORN_COMPATIBILITY_MODE = Boolean.getBoolean(NASHORN_COMPATIBILITY_MODE_SYSTEM_PROPERTY);
+    private static final int CONTEXT_POOL_SIZE = Integer.getInteger(CONTEXT_POOL_SIZE_SYSTEM_PROPERTY, 0);
+    static final int SOURCE_CACHE_SIZE = Integer.getInteger(SOURCE_CACHE_SIZE_SYSTEM_PROPERTY, 256);
+    private static final OutputMode DEFAULT_OUTPUT_MODE = OutputMode.valueOf(System.getProperty(OUTPUT_MODE_SYSTEM_PROPERTY, "passthrough").toUpperCase(Locale.ROOT));
+    private static final int OUTPUT_RING_SIZE = Integer.getInteger(OUTPUT_RING_SIZE_SYSTEM_PROPERTY, 64) * 1024;
+    private static final CacheStatistics SOURCE_CACHE_STATISTICS = new CacheStatistics();
+    static final CacheStatistics PARSE_CACHE_STATISTICS = new CacheStatistics();
+    static final CacheStatistics FUNCTION_CACHE_STATISTICS = new CacheStatistics();
+    // names of sources in the statistics and flight recorder events
+    static final ScriptKeys SCRIPT_KEYS = new ScriptKeys(SOURCE_CACHE_SIZE);
+    static final GraalJSScriptStatistics SCRIPT_STATISTICS = new GraalJSScriptStatistics();
+
+    static {
+        SCRIPT_STATISTICS.register();
+    }
+
+    private static final LruCache<SourceKey, Source> SOURCE_CACHE = new LruCache<>(SOURCE_CACHE_SIZE, SOURCE_CACHE_STATISTICS);
+    static final Function<Value, Object> TO_OBJECT = value -> value.as(Object.class);
+    static final Function<Value, Value> TO_VALUE = Function.identity();
 
     static {
         for (MagicBindingsOptionSetter setter : MAGIC_OPTION_SETTERS) {
@@ -303,46 +339,68 @@ public final class GraalJSScriptEngine extends AbstractScriptEngine implements C
     }
 
     private final GraalJSEngineFactory factory;
-    private final Context.Builder contextConfig;
+    // keeps the default engine open while this script engine is in use, null for other engines
+    private final GraalJSEngineRegistry.Use engineUse;
+    // returns the builder for the next context, a new one unless the caller supplied a builder
+    private final Supplier<Context.Builder> contextConfig;
+    private final GraalJSContextPool contextPool = new GraalJSContextPool(CONTEXT_POOL_SIZE);
+    // the pooled context each thread used last, returned when the thread moves to other bindings
+    private final ThreadLocal<GraalJSContextPool.Lease> lastLease = new ThreadLocal<>();
+    private volatile OutputMode outputMode = DEFAULT_OUTPUT_MODE;
 
     private boolean evalCalled;
 
     GraalJSScriptEngine(GraalJSEngineFactory factory) {
-        this(factory, factory.getPolyglotEngine(), null);
+        this(factory, null, (Supplier<Context.Builder>) null);
     }
 
-    GraalJSScriptEngine(GraalJSEngineFactory factory, Engine engine, Context.Builder contextConfig) {
+    GraalJSScriptEngine(GraalJSEngineFactory factory, Engine engine, Supplier<Context.Builder> contextConfig) {
         Engine engineToUse = engine;
+        this.engineUse = (engine == null && factory != null) ? factory.usePolyglotEngine(this) : null;
+        if (engineToUse == null && factory != null) {
+            engineToUse = engineUse != null ? engineUse.getEngine() : factory.getPolyglotEngine();
+        }
         if (engineToUse == null) {
-            engineToUse = Engine.newBuilder().allowExperimentalOptions(true).build();
+            engineToUse = Engine.newBuilder().allowExperimentalOptions(true).logHandler(LogHandler.getDefault("graaljs")).build();
         }
-        Context.Builder contextConfigToUse = contextConfig;
+        Supplier<Context.Builder> contextConfigToUse = contextConfig;
         if (contextConfigToUse == null) {
-            // default config
-//            contextConfigToUse = Context.newBuilder(ID).allowExperimentalOptions(true);
-            contextConfigToUse = Context.newBuilder(ID).allowExperimentalOptions(true).allowAllAccess(true); // load 函数可以执行
-            contextConfigToUse.option(JS_SYNTAX_EXTENSIONS_OPTION, "true");
-            contextConfigToUse.option(JS_LOAD_OPTION, "true");
-            contextConfigToUse.option(JS_PRINT_OPTION, "true");
-            contextConfigToUse.option(JS_GLOBAL_ARGUMENTS_OPTION, "true");
-            // ScriptContext provides Reader/Writer while Context.Builder requires
-            // InputStream/OutpuStream. We use DelegatingInput/OutputStream for this conversion. We
-            // cannot use the default charset for that because it may not be able to represent all
-            // the needed characters. So, we hard-code the usage of UTF-8 in
-            // DelegatingInput/OutputStream => we have to tell the engine to use UTF-8 (not the
-            // default charset) to read input/output.
-            contextConfigToUse.option(JS_CHARSET_OPTION, "UTF-8");
-            if (NASHORN_COMPATIBILITY_MODE) {
-                updateForNashornCompatibilityMode(contextConfigToUse);
-            } else if (Boolean.getBoolean(INSECURE_SCRIPTENGINE_ACCESS_SYSTEM_PROPERTY)) {
-                updateForScriptEngineAccessibility(contextConfigToUse);
-            }
+            contextConfigToUse = GraalJSScriptEngine::createDefaultContextConfig;
         }
+        Supplier<Context.Builder> baseConfig = contextConfigToUse;
+        Engine sharedEngine = engineToUse;
         this.factory = (factory == null) ? new GraalJSEngineFactory(engineToUse) : factory;
-        this.contextConfig = contextConfigToUse.option(JS_SCRIPT_ENGINE_GLOBAL_SCOPE_IMPORT_OPTION, "true").engine(engineToUse);
+        this.contextConfig = () -> {
+            Context.Builder builder = baseConfig.get();
+            synchronized (builder) {
+                return builder.option(JS_SCRIPT_ENGINE_GLOBAL_SCOPE_IMPORT_OPTION, "true").engine(sharedEngine);
+            }
+        };
         this.context.setBindings(new GraalJSBindings(this.contextConfig, this.context, this), ScriptContext.ENGINE_SCOPE);
     }
 
+    private static Context.Builder createDefaultContextConfig() {
+//        Context.Builder builder = Context.newBuilder(ID).allowExperimentalOptions(true);
+        Context.Builder builder = Context.newBuilder(ID).allowExperimentalOptions(true).allowAllAccess(true); // load 函数可以执行
+        builder.option(JS_SYNTAX_EXTENSIONS_OPTION, "true");
+        builder.option(JS_LOAD_OPTION, "true");
+        builder.option(JS_PRINT_OPTION, "true");
+        builder.option(JS_GLOBAL_ARGUMENTS_OPTION, "true");
+        // ScriptContext provides Reader/Writer while Context.Builder requires
+        // InputStream/OutpuStream. We use DelegatingInput/OutputStream for this conversion. We
+        // cannot use the default charset for that because it may not be able to represent all
+        // the needed characters. So, we hard-code the usage of UTF-8 in
+        // DelegatingInput/OutputStream => we have to tell the engine to use UTF-8 (not the
+        // default charset) to read input/output.
+        builder.option(JS_CHARSET_OPTION, "UTF-8");
+        if (NASHORN_COMPATIBILITY_MODE) {
+            updateForNashornCompatibilityMode(builder);
+        } else if (Boolean.getBoolean(INSECURE_SCRIPTENGINE_ACCESS_SYSTEM_PROPERTY)) {
+            updateForScriptEngineAccessibility(builder);
+        }
+        return builder;
+    }
+
     private static void updateForNashornCompatibilityMode(Context.Builder builder) {
         builder.allowAllAccess(true);
         builder.allowHostAccess(NASHORN_HOST_ACCESS);
@@ -355,15 +413,22 @@ public final class GraalJSScriptEngine extends AbstractScriptEngine implements C
 
     static Context createDefaultContext(Context.Builder builder, ScriptContext ctxt) {
         DelegatingInputStream in = new DelegatingInputStream();
-        DelegatingOutputStream out = new DelegatingOutputStream();
-        DelegatingOutputStream err = new DelegatingOutputStream();
+        OutputSink sink = new OutputSink(DEFAULT_OUTPUT_MODE, OUTPUT_RING_SIZE);
+        DelegatingOutputStream out = new DelegatingOutputStream(sink);
+        DelegatingOutputStream err = new DelegatingOutputStream(sink);
         if (ctxt != null) {
             in.setReader(ctxt.getReader());
             out.setWriter(ctxt.getWriter());
             err.setWriter(ctxt.getErrorWriter());
         }
-        builder.in(in).out(out).err(err);
-        Context ctx = builder.build();
+        GraalJSEvents.ContextCreateEvent event = new GraalJSEvents.ContextCreateEvent();
+        event.begin();
+        Context ctx;
+        // a builder supplied to create(Engine, Context.Builder) is shared by all contexts
+        synchronized (builder) {
+            ctx = builder.in(in).out(out).err(err).build();
+        }
+        event.commit();
         ctx.getPolyglotBindings().putMember(OUT_SYMBOL, out);
         ctx.getPolyglotBindings().putMember(ERR_SYMBOL, err);
         ctx.getPolyglotBindings().putMember(IN_SYMBOL, in);
@@ -376,14 +441,81 @@ public final class GraalJSScriptEngine extends AbstractScriptEngine implements C
      */
     @Override
     public void close() {
+        contextPool.close();
         getPolyglotContext().close();
+        if (engineUse != null) {
+            engineUse.end();
+        }
     }
 
     /**
-     * Returns the polyglot engine associated with this script engine.
+     * Returns the polyglot engine associated with this script engine. This stays the engine the
+     * script engine was created on after the default engine was released.
      */
     public Engine getPolyglotEngine() {
-        return factory.getPolyglotEngine();
+        return engineUse != null ? engineUse.getEngine() : factory.getPolyglotEngine();
+    }
+
+    /**
+     * Returns the pool of polyglot contexts used to evaluate scripts in ScriptContexts that do not
+     * carry {@link GraalJSBindings}. Pooling is enabled by setting the
+     * {@code graaljs.context-pool-size} system property to the number of idle contexts to keep per
+     * configuration. A context is leased to the ENGINE_SCOPE bindings of a ScriptContext on its
+     * first evaluation and returned when the thread evaluates in a ScriptContext with other
+     * ENGINE_SCOPE bindings, when {@link #releaseContext(ScriptContext)} is called or when the
+     * bindings become unreachable, whichever happens first.
+     */
+    public GraalJSContextPool getContextPool() {
+        return contextPool;
+    }
+
+    /**
+     * Returns the pooled context leased to the ENGINE_SCOPE bindings of the given ScriptContext to
+     * the pool, without waiting for the bindings to be garbage collected. The next evaluation in
+     * the ScriptContext leases a fresh context, and values returned by earlier evaluations must no
+     * longer be used. Does nothing if no context is leased.
+     */
+    public void releaseContext(ScriptContext ctxt) {
+        Bindings engineB = ctxt.getBindings(ScriptContext.ENGINE_SCOPE);
+        Object lease = engineB == null ? null : engineB.remove(POOLED_CONTEXT);
+        if (lease instanceof GraalJSContextPool.Lease) {
+            if (lastLease.get() == lease) {
+                lastLease.remove();
+            }
+            ((GraalJSContextPool.Lease) lease).release();
+        }
+    }
+
+    /**
+     * Returns the statistics of the JVM-wide cache that maps script text to {@link Source}
+     * instances. Its size is set with the {@code graaljs.source-cache-size} system property.
+     */
+    public static CacheStatistics getSourceCacheStatistics() {
+        return SOURCE_CACHE_STATISTICS;
+    }
+
+    /**
+     * Returns the statistics of the per polyglot context caches of parsed sources, summed over
+     * all contexts.
+     */
+    public static CacheStatistics getParseCacheStatistics() {
+        return PARSE_CACHE_STATISTICS;
+    }
+
+    /**
+     * Returns the statistics of the per polyglot context caches of parameterized script
+     * functions, summed over all contexts.
+     */
+    public static CacheStatistics getFunctionCacheStatistics() {
+        return FUNCTION_CACHE_STATISTICS;
+    }
+
+    /**
+     * Returns the JVM-wide eval, compile and invoke latencies of all scripts, which are also
+     * exposed through JMX.
+     */
+    public static GraalJSScriptStatistics getScriptStatistics() {
+        return SCRIPT_STATISTICS;
     }
 
     /**
@@ -409,6 +541,89 @@ public final class GraalJSScriptEngine extends AbstractScriptEngine implements C
         return context.eval(Source.newBuilder(ID, script, "internal-script").internal(true).buildLiteral());
     }
 
+    /**
+     * Selects where the stdout and stderr output of scripts goes. The mode is applied to the
+     * default context immediately and to every other polyglot context, including pooled ones, on
+     * its next evaluation; no context is rebuilt. The initial mode is set with the
+     * {@code graaljs.output-mode} system property ({@code passthrough}, {@code discard} or
+     * {@code ring}).
+     */
+    public void setOutputMode(OutputMode mode) {
+        this.outputMode = Objects.requireNonNull(mode);
+        OutputSink sink = getOutputSink(context);
+        if (sink != null) {
+            sink.setMode(mode);
+        }
+    }
+
+    public OutputMode getOutputMode() {
+        return outputMode;
+    }
+
+    /**
+     * Returns the number of bytes written to stdout and stderr in the polyglot context of the
+     * default ScriptContext, in any output mode.
+     */
+    public long getOutputByteCount() {
+        return getOutputByteCount(context);
+    }
+
+    /**
+     * Returns the number of bytes written to stdout and stderr in the polyglot context of the
+     * ScriptContext, or 0 if the ScriptContext has no context of its own yet.
+     */
+    public long getOutputByteCount(ScriptContext ctxt) {
+        OutputSink sink = getOutputSink(ctxt);
+        return sink == null ? 0 : sink.getByteCount();
+    }
+
+    /**
+     * Returns the stdout and stderr output kept in {@link OutputMode#RING} mode in the
+     * polyglot context of the default ScriptContext.
+     */
+    public String getCapturedOutput() {
+        return getCapturedOutput(context);
+    }
+
+    /**
+     * Returns the stdout and stderr output kept in {@link OutputMode#RING} mode in the
+     * polyglot context of the ScriptContext, oldest first.
+     */
+    public String getCapturedOutput(ScriptContext ctxt) {
+        OutputSink sink = getOutputSink(ctxt);
+        return sink == null ? "" : sink.getCapturedOutput();
+    }
+
+    /**
+     * Discards the output captured in the polyglot context of the ScriptContext.
+     */
+    public void clearCapturedOutput(ScriptContext ctxt) {
+        OutputSink sink = getOutputSink(ctxt);
+        if (sink != null) {
+            sink.clearCapturedOutput();
+        }
+    }
+
+    // does not create a polyglot context just to report its output
+    private static OutputSink getOutputSink(ScriptContext ctxt) {
+        Bindings engineB = ctxt.getBindings(ScriptContext.ENGINE_SCOPE);
+        if (engineB instanceof GraalJSBindings && ((GraalJSBindings) engineB).isContextInitialized()) {
+            Value out = ((GraalJSBindings) engineB).getContext().getPolyglotBindings().getMember(OUT_SYMBOL);
+            if (out != null && out.isProxyObject()) {
+                return ((DelegatingOutputStream) out.asProxyObject()).sink;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets all entries in the ENGINE_SCOPE bindings of the default ScriptContext. With the default
+     * {@link GraalJSBindings} this takes a single guest call instead of one per entry.
+     */
+    public void bindAll(Map<String, ?> values) {
+        getBindings(ScriptContext.ENGINE_SCOPE).putAll(values);
+    }
+
     @Override
     public Bindings createBindings() {
         return new GraalJSBindings(contextConfig, null, this);
@@ -459,28 +674,198 @@ public final class GraalJSScriptEngine extends AbstractScriptEngine implements C
         return eval(createSource(script, ctxt), ctxt);
     }
 
+    /**
+     * Evaluates the script in the default ScriptContext and returns the result without any
+     * conversion, see {@link #evalToValue(String, ScriptContext)}.
+     */
+    public Value evalToValue(String script) throws ScriptException {
+        return evalToValue(script, context);
+    }
+
+    /**
+     * Evaluates the script and returns the result without converting it to a Java object. The
+     * value belongs to the polyglot context of the ScriptContext. If that context is pooled, it is
+     * leased to the ENGINE_SCOPE bindings, so the value can only be used until the thread
+     * evaluates in a ScriptContext with other ENGINE_SCOPE bindings or
+     * {@link #releaseContext(ScriptContext)} is called, and only while the caller keeps the
+     * bindings reachable; after that the context is reset and handed to other ScriptContexts. Use
+     * {@link #evalToJava(String, ScriptContext)} for a result that outlives the ScriptContext.
+     */
+    public Value evalToValue(String script, ScriptContext ctxt) throws ScriptException {
+        return eval(createSource(script, ctxt), ctxt, TO_VALUE);
+    }
+
+    /**
+     * Evaluates the script in the default ScriptContext and converts the result to the given
+     * type, see {@link Value#as(Class)}.
+     *
+     * @throws ClassCastException if the result cannot be converted
+     */
+    public <T> T evalAs(String script, Class<T> type) throws ScriptException {
+        return evalAs(script, context, type);
+    }
+
+    /**
+     * Evaluates the script and converts the result to the given type, see {@link Value#as(Class)}.
+     * A map, list or interface result is a view of the polyglot context, with the lifetime
+     * described in {@link #evalToValue(String, ScriptContext)}.
+     *
+     * @throws ClassCastException if the result cannot be converted
+     */
+    public <T> T evalAs(String script, ScriptContext ctxt, Class<T> type) throws ScriptException {
+        return eval(createSource(script, ctxt), ctxt, value -> value.as(type));
+    }
+
+    /**
+     * Evaluates the script in the default ScriptContext and copies the result into plain Java
+     * objects, see {@link GraalJSValueExporter}.
+     */
+    public Object evalToJava(String script) throws ScriptException {
+        return evalToJava(script, context);
+    }
+
+    /**
+     * Evaluates the script and copies the result into plain Java objects, see
+     * {@link GraalJSValueExporter}. The copy does not depend on the polyglot context, so it stays
+     * valid after a pooled context was returned.
+     *
+     * @throws IllegalArgumentException if the result is nested too deeply or contains a cycle
+     */
+    public Object evalToJava(String script, ScriptContext ctxt) throws ScriptException {
+        return eval(createSource(script, ctxt), ctxt, GraalJSValueExporter::export);
+    }
+
+    /**
+     * Evaluates the script in the default ScriptContext and returns the result as a boolean.
+     *
+     * @throws ClassCastException if the result is not a boolean
+     */
+    public boolean evalBoolean(String script) throws ScriptException {
+        return eval(createSource(script, context), context, Value::asBoolean);
+    }
+
+    /**
+     * Evaluates the script in the default ScriptContext and returns the result as a long.
+     *
+     * @throws ClassCastException if the result is not a number that fits into a long
+     */
+    public long evalLong(String script) throws ScriptException {
+        return eval(createSource(script, context), context, Value::asLong);
+    }
+
+    /**
+     * Evaluates the script in the default ScriptContext and returns the result as a double.
+     *
+     * @throws ClassCastException if the result is not a number that fits into a double
+     */
+    public double evalDouble(String script) throws ScriptException {
+        return eval(createSource(script, context), context, Value::asDouble);
+    }
+
+    /**
+     * Evaluates the script in the default ScriptContext and returns the result as a string.
+     *
+     * @throws ClassCastException if the result is neither a string nor {@code null}
+     */
+    public String evalString(String script) throws ScriptException {
+        return eval(createSource(script, context), context, Value::asString);
+    }
+
     private static Source createSource(String script, ScriptContext ctxt) throws ScriptException {
         final Object val = ctxt.getAttribute(ScriptEngine.FILENAME);
-        if (val == null) {
-            return Source.newBuilder(ID, script, "<eval>").buildLiteral();
-        } else {
-            try {
-                return Source.newBuilder(ID, new File(val.toString())).content(script).build();
-            } catch (IOException ioex) {
-                throw new ScriptException(ioex);
+        SourceKey key = new SourceKey(val == null ? null : val.toString(), script);
+        Source source = SOURCE_CACHE.get(key);
+        if (source == null) {
+            if (val == null) {
+                source = Source.newBuilder(ID, script, "<eval>").buildLiteral();
+            } else {
+                try {
+                    source = Source.newBuilder(ID, new File(val.toString())).content(script).build();
+                } catch (IOException ioex) {
+                    throw new ScriptException(ioex);
+                }
             }
+            SOURCE_CACHE.put(key, source);
+        }
+        return source;
+    }
+
+    private static final class SourceKey {
+        private final String fileName;
+        private final String script;
+
+        SourceKey(String fileName, String script) {
+            this.fileName = fileName;
+            this.script = script;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof SourceKey)) {
+                return false;
+            }
+            SourceKey other = (SourceKey) obj;
+            return Objects.equals(fileName, other.fileName) && script.equals(other.script);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(fileName) + script.hashCode();
         }
     }
 
-    private static void updateDelegatingIOStreams(Context polyglotContext, ScriptContext scriptContext) {
+    private void updateDelegatingIOStreams(Context polyglotContext, ScriptContext scriptContext) {
         Value polyglotBindings = polyglotContext.getPolyglotBindings();
-        ((DelegatingOutputStream) polyglotBindings.getMember(OUT_SYMBOL).asProxyObject()).setWriter(scriptContext.getWriter());
+        DelegatingOutputStream out = polyglotBindings.getMember(OUT_SYMBOL).asProxyObject();
+        out.sink.setMode(outputMode);
+        out.setWriter(scriptContext.getWriter());
         ((DelegatingOutputStream) polyglotBindings.getMember(ERR_SYMBOL).asProxyObject()).setWriter(scriptContext.getErrorWriter());
         ((DelegatingInputStream) polyglotBindings.getMember(IN_SYMBOL).asProxyObject()).setReader(scriptContext.getReader());
     }
 
     private Object eval(Source source, ScriptContext scriptContext) throws ScriptException {
-        GraalJSBindings engineBindings = getOrCreateGraalJSBindings(scriptContext);
+        return eval(source, scriptContext, TO_OBJECT);
+    }
+
+    /**
+     * Evaluates the source and converts the result.
+     */
+    <T> T eval(Source source, ScriptContext scriptContext, Function<Value, T> conversion) throws ScriptException {
+        GraalJSEvents.EvalEvent event = new GraalJSEvents.EvalEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long startCpu = SCRIPT_STATISTICS.threadCpuTime();
+        long startAllocated = SCRIPT_STATISTICS.threadAllocatedBytes();
+        boolean failed = true;
+        try {
+            T result = evalInContext(source, scriptContext, conversion);
+            failed = false;
+            return result;
+        } finally {
+            SCRIPT_STATISTICS.record(GraalJSScriptStatistics.Operation.EVAL, source, start, startCpu, startAllocated, failed);
+            event.report(source, failed);
+        }
+    }
+
+    private <T> T evalInContext(Source source, ScriptContext scriptContext, Function<Value, T> conversion) throws ScriptException {
+        Bindings engineB = scriptContext.getBindings(ScriptContext.ENGINE_SCOPE);
+        if (contextPool.isEnabled() && isPoolable(engineB)) {
+            boolean leased = isLeased(engineB);
+            GraalJSBindings engineBindings = leasePooledBindings(engineB);
+            engineBindings.updateEngineScriptContext(scriptContext);
+            try {
+                if (leased) {
+                    engineBindings.putAll(engineB);
+                }
+                return eval(engineBindings, source, scriptContext, conversion);
+            } finally {
+                engineBindings.clearEngineScriptContext();
+            }
+        }
+        return eval(getOrCreateGraalJSBindings(scriptContext), source, scriptContext, conversion);
+    }
+
+    private <T> T eval(GraalJSBindings engineBindings, Source source, ScriptContext scriptContext, Function<Value, T> conversion) throws ScriptException {
         Context polyglotContext = engineBindings.getContext();
         updateDelegatingIOStreams(polyglotContext, scriptContext);
         try {
@@ -488,7 +873,7 @@ public final class GraalJSScriptEngine extends AbstractScriptEngine implements C
                 jrunscriptInitWorkaround(source, polyglotContext);
             }
             engineBindings.importGlobalBindings(scriptContext);
-            return polyglotContext.eval(source).as(Object.class);
+            return conversion.apply(engineBindings.parse(source).execute());
         } catch (PolyglotException e) {
             throw toScriptException(e);
         } finally {
@@ -496,7 +881,15 @@ public final class GraalJSScriptEngine extends AbstractScriptEngine implements C
         }
     }
 
-    private static ScriptException toScriptException(PolyglotException ex) {
+    static ScriptException toScriptException(PolyglotException ex) {
+        GraalJSEvents.ScriptExceptionEvent event = new GraalJSEvents.ScriptExceptionEvent();
+        if (event.isEnabled()) {
+            SourceSection location = ex.getSourceLocation();
+            event.source = location != null && location.isAvailable() ? GraalJSEvents.sourceName(location.getSource()) : null;
+            event.message = ex.getMessage();
+            event.hostException = ex.isHostException();
+            event.commit();
+        }
         ScriptException sex;
         if (ex.isHostException()) {
             Throwable hostException = ex.asHostException();
@@ -535,6 +928,8 @@ public final class GraalJSScriptEngine extends AbstractScriptEngine implements C
         Bindings engineB = scriptContext.getBindings(ScriptContext.ENGINE_SCOPE);
         if (engineB instanceof GraalJSBindings) {
             return ((GraalJSBindings) engineB);
+        } else if (contextPool.isEnabled() && isPoolable(engineB)) {
+            return leasePooledBindings(engineB);
         } else {
             GraalJSBindings bindings = new GraalJSBindings(createContext(engineB), scriptContext, this);
             bindings.putAll(engineB);
@@ -545,7 +940,7 @@ public final class GraalJSScriptEngine extends AbstractScriptEngine implements C
     private Context createContext(Bindings engineB) {
         Object ctx = engineB.get(POLYGLOT_CONTEXT);
         if (!(ctx instanceof Context)) {
-            Context.Builder builder = contextConfig;
+            Context.Builder builder = contextConfig.get();
             for (MagicBindingsOptionSetter optionSetter : MAGIC_OPTION_SETTERS) {
                 Object value = engineB.get(optionSetter.getOptionKey());
                 if (value != null) {
@@ -559,6 +954,75 @@ public final class GraalJSScriptEngine extends AbstractScriptEngine implements C
         return (Context) ctx;
     }
 
+    private static boolean isPoolable(Bindings engineB) {
+        return engineB != null && !(engineB instanceof GraalJSBindings) && !(engineB.get(POLYGLOT_CONTEXT) instanceof Context);
+    }
+
+    private static boolean isLeased(Bindings engineB) {
+        Object lease = engineB.get(POOLED_CONTEXT);
+        return lease instanceof GraalJSContextPool.Lease && !((GraalJSContextPool.Lease) lease).isReleased();
+    }
+
+    /**
+     * Returns the bindings of the pooled context leased to the given ENGINE_SCOPE bindings, leasing
+     * one on first use. The lease lasts until the current thread moves on to other ENGINE_SCOPE
+     * bindings, {@link #releaseContext(ScriptContext)} is called or the bindings become
+     * unreachable, so that all evaluations and invocations in a ScriptContext see the same global
+     * scope.
+     */
+    private GraalJSBindings leasePooledBindings(Bindings engineB) {
+        GraalJSContextPool.Lease previous = lastLease.get();
+        Object lease = engineB.get(POOLED_CONTEXT);
+        if (lease instanceof GraalJSContextPool.Lease && ((GraalJSContextPool.Lease) lease).use()) {
+            if (previous != lease) {
+                releaseLastLease(previous);
+                lastLease.set((GraalJSContextPool.Lease) lease);
+            }
+            return ((GraalJSContextPool.Lease) lease).getBindings();
+        }
+        releaseLastLease(previous);
+        Map<String, Object> magicOptions = removeMagicOptions(engineB);
+        GraalJSContextPool.Lease newLease = contextPool.lease(engineB, magicOptions, () -> createPooledBindings(magicOptions));
+        engineB.put(POOLED_CONTEXT, newLease);
+        lastLease.set(newLease);
+        GraalJSBindings bindings = newLease.getBindings();
+        bindings.putAll(engineB);
+        return bindings;
+    }
+
+    private void releaseLastLease(GraalJSContextPool.Lease previous) {
+        if (previous != null) {
+            lastLease.remove();
+            previous.releaseIfLastUser();
+        }
+    }
+
+    private GraalJSBindings createPooledBindings(Map<String, Object> magicOptions) {
+        Context.Builder builder = contextConfig.get();
+        for (Map.Entry<String, Object> option : magicOptions.entrySet()) {
+            builder = MAGIC_BINDINGS_OPTION_MAP.get(option.getKey()).setOption(builder, option.getValue());
+        }
+        return new GraalJSBindings(createDefaultContext(builder, context), null, this);
+    }
+
+    /**
+     * Removes the magic options from the bindings and returns them keyed by option name.
+     */
+    private static Map<String, Object> removeMagicOptions(Bindings engineB) {
+        Map<String, Object> options = null;
+        for (MagicBindingsOptionSetter optionSetter : MAGIC_OPTION_SETTERS) {
+            Object value = engineB.get(optionSetter.getOptionKey());
+            if (value != null) {
+                if (options == null) {
+                    options = new HashMap<>();
+                }
+                options.put(optionSetter.getOptionKey(), value);
+                engineB.remove(optionSetter.getOptionKey());
+            }
+        }
+        return options == null ? Map.of() : options;
+    }
+
     @Override
     public GraalJSEngineFactory getFactory() {
         return factory;
@@ -580,15 +1044,56 @@ public final class GraalJSScriptEngine extends AbstractScriptEngine implements C
                 throw notCallable(name);
             }
         }
+        GraalJSEvents.InvokeEvent event = new GraalJSEvents.InvokeEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long startCpu = SCRIPT_STATISTICS.threadCpuTime();
+        long startAllocated = SCRIPT_STATISTICS.threadAllocatedBytes();
+        boolean failed = true;
         try {
-            return thisValue.invokeMember(name, args).as(Object.class);
+            Object result = thisValue.invokeMember(name, args).as(Object.class);
+            failed = false;
+            return result;
         } catch (PolyglotException e) {
             throw toScriptException(e);
+        } finally {
+            SCRIPT_STATISTICS.record(GraalJSScriptStatistics.Operation.INVOKE, name, start, startCpu, startAllocated, failed);
+            event.report(name, failed);
         }
     }
 
     @Override
     public Object invokeFunction(String name, Object... args) throws ScriptException, NoSuchMethodException {
+        Value function = resolveFunction(name);
+        GraalJSEvents.InvokeEvent event = new GraalJSEvents.InvokeEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long startCpu = SCRIPT_STATISTICS.threadCpuTime();
+        long startAllocated = SCRIPT_STATISTICS.threadAllocatedBytes();
+        boolean failed = true;
+        try {
+            Object result = function.execute(args).as(Object.class);
+            failed = false;
+            return result;
+        } catch (PolyglotException e) {
+            throw toScriptException(e);
+        } finally {
+            SCRIPT_STATISTICS.record(GraalJSScriptStatistics.Operation.INVOKE, name, start, startCpu, startAllocated, failed);
+            event.report(name, failed);
+        }
+    }
+
+    /**
+     * Resolves a global function of the default ScriptContext once and returns a handle that can
+     * be invoked repeatedly, e.g. for per-sample helper calls.
+     *
+     * @throws NoSuchMethodException if there is no global of that name or it is not a function
+     */
+    public GraalJSFunction prepareFunction(String name) throws NoSuchMethodException {
+        return new GraalJSFunction(name, resolveFunction(name));
+    }
+
+    private Value resolveFunction(String name) throws NoSuchMethodException {
         GraalJSBindings engineBindings = getOrCreateGraalJSBindings(context);
         engineBindings.importGlobalBindings(context);
         Value function = engineBindings.getContext().getBindings(ID).getMember(name);
@@ -598,11 +1103,7 @@ public final class GraalJSScriptEngine extends AbstractScriptEngine implements C
         } else if (!function.canExecute()) {
             throw notCallable(name);
         }
-        try {
-            return function.execute(args).as(Object.class);
-        } catch (PolyglotException e) {
-            throw toScriptException(e);
-        }
+        return function;
     }
 
     private static NoSuchMethodException noSuchMethod(String name) throws NoSuchMethodException {
@@ -650,46 +1151,115 @@ public final class GraalJSScriptEngine extends AbstractScriptEngine implements C
     }
 
     @Override
-    public CompiledScript compile(String script) throws ScriptException {
+    public GraalJSCompiledScript compile(String script) throws ScriptException {
         Source source = createSource(script, getContext());
         return compile(source);
     }
 
     @Override
-    public CompiledScript compile(Reader reader) throws ScriptException {
+    public GraalJSCompiledScript compile(Reader reader) throws ScriptException {
         Source source = createSource(read(reader), getContext());
         return compile(source);
     }
 
-    private CompiledScript compile(Source source) throws ScriptException {
-        checkSyntax(source);
-        return new CompiledScript() {
-            @Override
-            public ScriptEngine getEngine() {
-                return GraalJSScriptEngine.this;
+    /**
+     * Compiles the script as the body of a function with the given parameters. The returned
+     * script is executed with positional arguments, or with the attributes named like the
+     * parameters when evaluated in a ScriptContext. A script that is a single expression returns
+     * its value; otherwise the body needs an explicit {@code return}.
+     */
+    public GraalJSParameterizedScript compile(String script, String... parameterNames) throws ScriptException {
+        for (String parameterName : parameterNames) {
+            Objects.requireNonNull(parameterName, "parameter name can not be null");
+        }
+        String params = String.join(", ", parameterNames);
+        Object fileName = getContext().getAttribute(ScriptEngine.FILENAME);
+        String name = fileName == null ? "<eval>" : fileName.toString();
+        GraalJSBindings engineBindings = getOrCreateGraalJSBindings(context);
+        Source source = Source.newBuilder(ID, "(function(" + params + ") {return (" + stripTrailingSemicolons(script) + "\n)})", name).buildLiteral();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            try {
+                engineBindings.parse(source);
+            } catch (PolyglotException e) {
+                if (!e.isSyntaxError()) {
+                    throw toScriptException(e);
+                }
+                // not a single expression, use the script as statements
+                source = Source.newBuilder(ID, "(function(" + params + ") {" + script + "\n})", name).buildLiteral();
+                try {
+                    engineBindings.parse(source);
+                } catch (PolyglotException pex) {
+                    throw toScriptException(pex);
+                }
             }
+            failed = false;
+        } finally {
+            SCRIPT_STATISTICS.record(GraalJSScriptStatistics.Operation.COMPILE, source, start, failed);
+        }
+        return new GraalJSParameterizedScript(this, source, parameterNames.clone());
+    }
 
-            @Override
-            public Object eval(ScriptContext ctx) throws ScriptException {
-                return GraalJSScriptEngine.this.eval(source, ctx);
-            }
-        };
+    private static String stripTrailingSemicolons(String script) {
+        int end = script.length();
+        while (end > 0 && (script.charAt(end - 1) == ';' || Character.isWhitespace(script.charAt(end - 1)))) {
+            end--;
+        }
+        return script.substring(0, end);
+    }
+
+    <T> T invokeParameterized(GraalJSParameterizedScript script, ScriptContext scriptContext, Object[] args, Function<Value, T> conversion) throws ScriptException {
+        GraalJSBindings engineBindings = getOrCreateGraalJSBindings(scriptContext);
+        updateDelegatingIOStreams(engineBindings.getContext(), scriptContext);
+        GraalJSEvents.InvokeEvent event = new GraalJSEvents.InvokeEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long startCpu = SCRIPT_STATISTICS.threadCpuTime();
+        long startAllocated = SCRIPT_STATISTICS.threadAllocatedBytes();
+        boolean failed = true;
+        try {
+            engineBindings.importGlobalBindings(scriptContext);
+            T result = conversion.apply(script.getFunction(engineBindings).execute(args));
+            failed = false;
+            return result;
+        } catch (PolyglotException e) {
+            throw toScriptException(e);
+        } finally {
+            SCRIPT_STATISTICS.record(GraalJSScriptStatistics.Operation.INVOKE, script.getSource(), start, startCpu, startAllocated, failed);
+            event.report(script.getSource(), failed);
+        }
+    }
+
+    private GraalJSCompiledScript compile(Source source) throws ScriptException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            checkSyntax(source);
+            failed = false;
+        } finally {
+            SCRIPT_STATISTICS.record(GraalJSScriptStatistics.Operation.COMPILE, source, start, failed);
+        }
+        return new GraalJSCompiledScript(this, source);
     }
 
     private void checkSyntax(Source source) throws ScriptException {
         try {
-            getPolyglotContext().parse(source);
+            getOrCreateGraalJSBindings(context).parse(source);
         } catch (PolyglotException pex) {
             throw toScriptException(pex);
         }
     }
 
+    private static final int STREAM_BUFFER_SIZE = 1024;
+
     private static class DelegatingInputStream extends InputStream implements Proxy {
 
         private Reader reader;
-        private CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
-        private CharBuffer charBuffer = CharBuffer.allocate(2);
-        private ByteBuffer byteBuffer = ByteBuffer.allocate((int) encoder.maxBytesPerChar() * 2);
+        private CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private CharBuffer charBuffer = CharBuffer.allocate(STREAM_BUFFER_SIZE);
+        private ByteBuffer byteBuffer = ByteBuffer.allocate((int) encoder.maxBytesPerChar() * STREAM_BUFFER_SIZE);
+        private boolean endOfInput;
 
         DelegatingInputStream() {
             byteBuffer.flip();
@@ -698,61 +1268,165 @@ public final class GraalJSScriptEngine extends AbstractScriptEngine implements C
         @Override
         public int read() throws IOException {
             if (reader != null) {
-                while (!byteBuffer.hasRemaining()) {
-                    int c = reader.read();
-                    if (c == -1) {
-                        return -1;
-                    }
-                    byteBuffer.clear();
-                    charBuffer.put((char) c);
-                    charBuffer.flip();
-                    encoder.encode(charBuffer, byteBuffer, false);
-                    charBuffer.compact();
-                    byteBuffer.flip();
+                if (!fill()) {
+                    return -1;
                 }
-                return byteBuffer.get();
+                return byteBuffer.get() & 0xFF;
             }
             return 0;
         }
 
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (reader == null) {
+                return super.read(b, off, len);
+            }
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(len, byteBuffer.remaining());
+            byteBuffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return byteBuffer.remaining();
+        }
+
+        /**
+         * Encodes the next block of characters of the reader unless there are bytes left, returns
+         * {@code false} at the end of the input.
+         */
+        private boolean fill() throws IOException {
+            while (!byteBuffer.hasRemaining()) {
+                if (endOfInput) {
+                    return false;
+                }
+                int count = reader.read(charBuffer.array(), charBuffer.position(), charBuffer.remaining());
+                if (count == -1) {
+                    endOfInput = true;
+                } else {
+                    charBuffer.position(charBuffer.position() + count);
+                }
+                charBuffer.flip();
+                byteBuffer.clear();
+                encoder.encode(charBuffer, byteBuffer, endOfInput);
+                if (endOfInput) {
+                    encoder.flush(byteBuffer);
+                }
+                charBuffer.compact();
+                byteBuffer.flip();
+            }
+            return true;
+        }
+
         void setReader(Reader reader) {
-            this.reader = reader;
+            if (reader != this.reader) {
+                this.reader = reader;
+                // bytes buffered from the previous reader are not delivered
+                charBuffer.clear();
+                byteBuffer.clear();
+                byteBuffer.flip();
+                encoder.reset();
+                endOfInput = false;
+            }
         }
 
     }
 
     private static class DelegatingOutputStream extends OutputStream implements Proxy {
 
+        private final OutputSink sink;
         private Writer writer;
-        private CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
-        private ByteBuffer byteBuffer = ByteBuffer.allocate((int) StandardCharsets.UTF_8.newEncoder().maxBytesPerChar() * 2);
-        private CharBuffer charBuffer = CharBuffer.allocate(byteBuffer.capacity() * (int) decoder.maxCharsPerByte());
+        private CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private ByteBuffer byteBuffer = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+        private CharBuffer charBuffer = CharBuffer.allocate(STREAM_BUFFER_SIZE);
+        // whether anything was written since the last flush of the writer
+        private boolean dirty;
+
+        DelegatingOutputStream(OutputSink sink) {
+            this.sink = sink;
+        }
 
         @Override
         public void write(int b) throws IOException {
+            sink.count(1);
+            OutputMode mode = sink.getMode();
+            if (mode != OutputMode.PASSTHROUGH) {
+                if (mode == OutputMode.RING) {
+                    sink.capture(b);
+                }
+                return;
+            }
             if (writer != null) {
+                if (b >= 0 && b < 0x80 && byteBuffer.position() == 0) {
+                    writer.write(b);
+                    dirty = true;
+                    return;
+                }
                 byteBuffer.put((byte) b);
-                byteBuffer.flip();
-                decoder.decode(byteBuffer, charBuffer, false);
-                byteBuffer.compact();
-                charBuffer.flip();
-                while (charBuffer.hasRemaining()) {
-                    char c = charBuffer.get();
-                    writer.write(c);
+                decode();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            sink.count(len);
+            OutputMode mode = sink.getMode();
+            if (mode != OutputMode.PASSTHROUGH) {
+                if (mode == OutputMode.RING) {
+                    sink.capture(b, off, len);
+                }
+                return;
+            }
+            if (writer != null) {
+                while (len > 0) {
+                    int count = Math.min(len, byteBuffer.remaining());
+                    byteBuffer.put(b, off, count);
+                    off += count;
+                    len -= count;
+                    decode();
                 }
-                charBuffer.clear();
             }
         }
 
+        /**
+         * Decodes the buffered bytes and passes the characters to the writer in blocks. An
+         * incomplete trailing UTF-8 sequence stays in the buffer.
+         */
+        private void decode() throws IOException {
+            byteBuffer.flip();
+            CoderResult result;
+            do {
+                result = decoder.decode(byteBuffer, charBuffer, false);
+                if (charBuffer.position() > 0) {
+                    writer.write(charBuffer.array(), 0, charBuffer.position());
+                    charBuffer.clear();
+                    dirty = true;
+                }
+            } while (result.isOverflow());
+            byteBuffer.compact();
+        }
+
         @Override
         public void flush() throws IOException {
-            if (writer != null) {
+            if (writer != null && dirty) {
                 writer.flush();
+                dirty = false;
             }
         }
 
         void setWriter(Writer writer) {
-            this.writer = writer;
+            if (writer != this.writer) {
+                this.writer = writer;
+                dirty = true;
+            }
         }
 
     }
@@ -760,10 +1434,10 @@ public final class GraalJSScriptEngine extends AbstractScriptEngine implements C
     /**
      * Creates a new GraalJSScriptEngine with default configuration.
      *
-     * @see #create(Engine, Context.Builder) to customize the configuration.
+     * @see #create(Engine, Supplier) to customize the configuration.
      */
     public static GraalJSScriptEngine create() {
-        return create(null, null);
+        return new GraalJSScriptEngine(null, null, (Supplier<Context.Builder>) null);
     }
 
     /**
@@ -773,6 +1447,11 @@ public final class GraalJSScriptEngine extends AbstractScriptEngine implements C
      * {@link Builder#out(OutputStream) out},{@link Builder#err(OutputStream) err} and
      * {@link Builder#in(InputStream) in} stream configuration are not inherited from the provided
      * polyglot context config. Instead {@link ScriptContext} output and input streams are used.
+     * <p>
+     * The builder is shared by all contexts of the engine and is configured further by it: contexts
+     * are built one at a time, and magic {@code polyglot.js.*} options set through bindings are
+     * applied to the builder and stay in effect for all contexts built after them. Use
+     * {@link #create(Engine, Supplier)} to keep such options to the bindings that set them.
      *
      * @param engine the engine to be used for context configurations or <code>null</code> if a
      *            default engine should be used.
@@ -781,7 +1460,22 @@ public final class GraalJSScriptEngine extends AbstractScriptEngine implements C
      *            context instances.
      */
     public static GraalJSScriptEngine create(Engine engine, Context.Builder newContextConfig) {
-        return new GraalJSScriptEngine(null, engine, newContextConfig);
+        return new GraalJSScriptEngine(null, engine, newContextConfig == null ? null : () -> newContextConfig);
+    }
+
+    /**
+     * Creates a new GraalJS script engine like {@link #create(Engine, Context.Builder)}, but asks
+     * the supplier for a new builder for every polyglot context. Magic {@code polyglot.js.*}
+     * options and the streams of a context are then set on its own builder only, and contexts can
+     * be built concurrently.
+     *
+     * @param engine the engine to be used for context configurations or <code>null</code> if a
+     *            default engine should be used.
+     * @param newContextConfigs returns a new base configuration for each context, or
+     *            <code>null</code> if the default configuration should be used.
+     */
+    public static GraalJSScriptEngine create(Engine engine, Supplier<Context.Builder> newContextConfigs) {
+        return new GraalJSScriptEngine(null, engine, newContextConfigs);
     }
 
     private static boolean isInterfaceImplemented(final Class<?> iface, final Value obj) {
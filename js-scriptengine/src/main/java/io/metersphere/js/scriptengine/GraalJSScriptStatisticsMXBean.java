@@ -0,0 +1,46 @@
+package io.metersphere.js.scriptengine;
+
+import java.util.List;
+
+/**
+ * Management interface of {@link GraalJSScriptStatistics}, registered as
+ * {@value GraalJSScriptStatistics#OBJECT_NAME}.
+ */
+public interface GraalJSScriptStatisticsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * Returns whether the CPU time and the allocated bytes of evals and invokes are recorded.
+     */
+    boolean isResourceAccountingEnabled();
+
+    void setResourceAccountingEnabled(boolean enabled);
+
+    /**
+     * Returns the number of scripts with recorded latencies.
+     */
+    int getScriptCount();
+
+    /**
+     * Returns the latencies of every recorded operation and script, slowest p99 first.
+     */
+    List<GraalJSScriptLatency> getLatencies();
+
+    /**
+     * Returns the {@code limit} operations and scripts that used the most CPU time.
+     */
+    List<GraalJSScriptLatency> getTopScriptsByCpuTime(int limit);
+
+    /**
+     * Returns the {@code limit} operations and scripts that allocated the most bytes.
+     */
+    List<GraalJSScriptLatency> getTopScriptsByAllocation(int limit);
+
+    /**
+     * Discards all recorded latencies.
+     */
+    void reset();
+}
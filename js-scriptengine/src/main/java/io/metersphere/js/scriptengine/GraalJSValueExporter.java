@@ -0,0 +1,164 @@
+package io.metersphere.js.scriptengine;
+
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.graalvm.polyglot.Value;
+
+/**
+ * Copies a JS object graph into plain Java objects in a single pass, so the result can be handed
+ * to code that must not keep or touch guest objects (e.g. JMeter listeners running after the
+ * context was reused). Every guest value is read exactly once, whereas the {@code Map}/{@code List}
+ * proxies created by {@code as(Object.class)} go through the polyglot boundary on every access.
+ * <p>
+ * Strings, booleans and numbers become {@code String}, {@code Boolean} and the smallest of
+ * {@code Integer}, {@code Long} and {@code Double} that holds the value. Arrays and iterables
+ * become {@code ArrayList}s, {@code Map}s and plain objects become {@code LinkedHashMap}s in
+ * iteration order, {@code ArrayBuffer}s become {@code byte[]} and dates become {@code Instant}s.
+ * Host objects are unwrapped. Functions are not data and are converted with
+ * {@link Value#as(Class) as(Object.class)}.
+ */
+public final class GraalJSValueExporter {
+
+    public static final int DEFAULT_MAX_DEPTH = 64;
+
+    private final int maxDepth;
+    private final Set<Value> path = new HashSet<>();
+
+    private GraalJSValueExporter(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Exports the value with a nesting limit of {@link #DEFAULT_MAX_DEPTH}.
+     */
+    public static Object export(Value value) {
+        return export(value, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * Exports the value. Objects shared by several parents are copied once per parent.
+     *
+     * @param maxDepth the maximum nesting of arrays and objects
+     * @throws IllegalArgumentException if the graph is nested deeper than {@code maxDepth} or
+     *             contains a cycle
+     */
+    public static Object export(Value value, int maxDepth) {
+        if (value == null) {
+            return null;
+        }
+        return new GraalJSValueExporter(maxDepth).toJava(value, 0);
+    }
+
+    private Object toJava(Value value, int depth) {
+        // most common kinds first, every check is a call into the guest
+        if (value.isString()) {
+            return value.asString();
+        } else if (value.isNumber()) {
+            return toNumber(value);
+        } else if (value.isBoolean()) {
+            return value.asBoolean();
+        } else if (value.isNull()) {
+            return null;
+        } else if (value.isHostObject()) {
+            return value.asHostObject();
+        }
+        if (depth >= maxDepth) {
+            throw new IllegalArgumentException("Value is nested deeper than " + maxDepth + " levels");
+        }
+        if (!path.add(value)) {
+            throw new IllegalArgumentException("Value contains a cycle");
+        }
+        try {
+            if (value.hasArrayElements()) {
+                return arrayToList(value, depth + 1);
+            } else if (value.canExecute()) {
+                return value.as(Object.class);
+            } else if (value.isInstant()) {
+                return value.asInstant();
+            } else if (value.hasBufferElements()) {
+                return toBytes(value);
+            } else if (value.hasHashEntries()) {
+                return toMap(value, depth + 1);
+            } else if (value.hasIterator()) {
+                return iteratorToList(value.getIterator(), depth + 1);
+            } else if (value.hasMembers()) {
+                return toObjectMap(value, depth + 1);
+            }
+            return value.as(Object.class);
+        } finally {
+            path.remove(value);
+        }
+    }
+
+    private static Object toNumber(Value value) {
+        if (value.fitsInInt()) {
+            return value.asInt();
+        } else if (value.fitsInLong()) {
+            return value.asLong();
+        } else if (value.fitsInDouble()) {
+            return value.asDouble();
+        }
+        return value.asBigInteger();
+    }
+
+    private static byte[] toBytes(Value value) {
+        long size = value.getBufferSize();
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Buffer of " + size + " bytes is too large");
+        }
+        byte[] bytes = new byte[(int) size];
+        int i = 0;
+        // eight bytes per guest call
+        for (; i + Long.BYTES <= bytes.length; i += Long.BYTES) {
+            long word = value.readBufferLong(ByteOrder.BIG_ENDIAN, i);
+            for (int b = 0; b < Long.BYTES; b++) {
+                bytes[i + b] = (byte) (word >>> (56 - 8 * b));
+            }
+        }
+        for (; i < bytes.length; i++) {
+            bytes[i] = value.readBufferByte(i);
+        }
+        return bytes;
+    }
+
+    private List<Object> arrayToList(Value array, int depth) {
+        long size = array.getArraySize();
+        List<Object> list = new ArrayList<>((int) Math.min(size, Integer.MAX_VALUE));
+        for (long i = 0; i < size; i++) {
+            list.add(toJava(array.getArrayElement(i), depth));
+        }
+        return list;
+    }
+
+    private List<Object> iteratorToList(Value iterator, int depth) {
+        List<Object> list = new ArrayList<>();
+        while (iterator.hasIteratorNextElement()) {
+            list.add(toJava(iterator.getIteratorNextElement(), depth));
+        }
+        return list;
+    }
+
+    private Map<Object, Object> toMap(Value map, int depth) {
+        Map<Object, Object> result = new LinkedHashMap<>();
+        Value entries = map.getHashEntriesIterator();
+        while (entries.hasIteratorNextElement()) {
+            Value entry = entries.getIteratorNextElement();
+            result.put(toJava(entry.getArrayElement(0), depth), toJava(entry.getArrayElement(1), depth));
+        }
+        return result;
+    }
+
+    private Map<String, Object> toObjectMap(Value object, int depth) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String key : object.getMemberKeys()) {
+            result.put(key, toJava(object.getMember(key), depth));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,77 @@
+package io.metersphere.js.scriptengine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.script.ScriptContext;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import javax.script.SimpleScriptContext;
+
+import io.metersphere.scriptengine.common.NativeCopy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class GraalJSCollectionImportTest {
+
+    private GraalJSScriptEngine engine;
+
+    @BeforeEach
+    void createEngine() {
+        engine = GraalJSScriptEngine.create();
+    }
+
+    @AfterEach
+    void closeEngine() {
+        engine.close();
+    }
+
+    private static Map<String, Object> props() {
+        Map<String, Object> props = new HashMap<>();
+        props.put("name", "a\"b");
+        props.put("count", 3);
+        props.put("items", List.of(1L, 2.5, true));
+        return props;
+    }
+
+    @Test
+    void wrappedCollectionIsCopiedIntoNativeObject() throws ScriptException {
+        Map<String, Object> props = props();
+        engine.put("props", NativeCopy.of(props));
+        assertEquals("undefined", engine.eval("typeof props.put"));
+        assertEquals("a\"b|3|2.5|true", engine.eval("[props.name, props.count, props.items[1], Array.isArray(props.items)].join('|')"));
+
+        engine.eval("props.count = 4");
+        assertEquals(3, props.get("count"));
+    }
+
+    @Test
+    void collectionsAreSharedUnlessWrapped() throws ScriptException {
+        engine.put("props", props());
+        assertEquals("function", engine.eval("typeof props.put"));
+    }
+
+    @Test
+    void unconvertibleCollectionIsBoundAsHostObject() throws ScriptException {
+        List<Object> list = new ArrayList<>(List.of(1, 2, 3));
+        engine.put("tooLarge", NativeCopy.of(list, 2));
+        engine.put("unsafeLong", NativeCopy.of(List.of(1L << 60)));
+        list.add(new Object());
+        engine.put("bean", NativeCopy.of(list));
+        assertEquals("function|function|function", engine.eval("[typeof tooLarge.add, typeof unsafeLong.add, typeof bean.add].join('|')"));
+    }
+
+    @Test
+    void wrappedCollectionInScriptContextBindingsIsCopied() throws ScriptException {
+        ScriptContext ctxt = new SimpleScriptContext();
+        SimpleBindings bindings = new SimpleBindings();
+        bindings.put("props", NativeCopy.of(props()));
+        ctxt.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
+        assertEquals("undefined", engine.eval("typeof props.put", ctxt));
+    }
+}
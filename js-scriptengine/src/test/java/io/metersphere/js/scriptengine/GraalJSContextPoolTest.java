@@ -0,0 +1,67 @@
+package io.metersphere.js.scriptengine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import javax.script.ScriptContext;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import javax.script.SimpleScriptContext;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs with {@code graaljs.context-pool-size} set by the surefire configuration.
+ */
+class GraalJSContextPoolTest {
+
+    private GraalJSScriptEngine engine;
+
+    @BeforeEach
+    void createEngine() {
+        engine = GraalJSScriptEngine.create();
+        assertTrue(engine.getContextPool().isEnabled(), "graaljs.context-pool-size must be set");
+    }
+
+    @AfterEach
+    void closeEngine() {
+        engine.close();
+    }
+
+    private static ScriptContext newScriptContext() {
+        ScriptContext ctxt = new SimpleScriptContext();
+        ctxt.setBindings(new SimpleBindings(), ScriptContext.ENGINE_SCOPE);
+        return ctxt;
+    }
+
+    @Test
+    void lexicalDeclarationsDoNotReachTheNextLease() throws ScriptException {
+        assertEquals(1, engine.eval("let x = 1; x", newScriptContext()));
+        assertEquals(1, engine.eval("let x = 1; x", newScriptContext()));
+        GraalJSContextPool pool = engine.getContextPool();
+        assertEquals(1, pool.getDiscardCount());
+        assertEquals(0, pool.getReturnCount());
+    }
+
+    @Test
+    void contextIsReturnedWhenTheThreadMovesOn() throws ScriptException {
+        engine.eval("var a = 1; Array.prototype.extra = 2;", newScriptContext());
+        assertEquals("undefined undefined", engine.eval("typeof a + ' ' + typeof [].extra", newScriptContext()));
+        GraalJSContextPool pool = engine.getContextPool();
+        assertEquals(1, pool.getReturnCount());
+        assertEquals(1, pool.getHitCount());
+    }
+
+    @Test
+    void leaseLastsAcrossEvaluationsInOneScriptContext() throws ScriptException {
+        ScriptContext ctxt = newScriptContext();
+        ctxt.setAttribute("n", 2, ScriptContext.ENGINE_SCOPE);
+        engine.eval("function twice() { return 2 * n; }", ctxt);
+        assertEquals(4, engine.eval("twice()", ctxt));
+        engine.releaseContext(ctxt);
+        assertEquals(1, engine.getContextPool().getReturnCount());
+        assertEquals("undefined", engine.eval("typeof twice", ctxt));
+    }
+}
@@ -0,0 +1,39 @@
+package io.metersphere.js.scriptengine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import javax.script.ScriptException;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.junit.jupiter.api.Test;
+
+class GraalJSEngineRegistryTest {
+
+    @Test
+    void releasedEngineStaysOpenForLiveScriptEngines() throws ScriptException {
+        GraalJSEngineFactory factory = new GraalJSEngineFactory();
+        GraalJSScriptEngine scriptEngine = (GraalJSScriptEngine) factory.getScriptEngine();
+        Engine engine = scriptEngine.getPolyglotEngine();
+        assertEquals(2, scriptEngine.eval("1 + 1"));
+
+        factory.releasePolyglotEngine();
+        assertEquals(3, scriptEngine.eval("1 + 2"));
+        assertNotSame(engine, factory.getPolyglotEngine());
+
+        scriptEngine.close();
+        assertThrows(IllegalStateException.class, () -> Context.newBuilder().engine(engine).build());
+        factory.releasePolyglotEngine();
+    }
+
+    @Test
+    void releasedEngineWithoutScriptEnginesIsClosed() {
+        GraalJSEngineFactory factory = new GraalJSEngineFactory();
+        Engine engine = factory.getPolyglotEngine();
+
+        factory.releasePolyglotEngine();
+        assertThrows(IllegalStateException.class, () -> Context.newBuilder().engine(engine).build());
+    }
+}
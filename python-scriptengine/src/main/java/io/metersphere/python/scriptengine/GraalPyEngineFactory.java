@@ -1,12 +1,18 @@
 package io.metersphere.python.scriptengine;
 
+import io.metersphere.scriptengine.common.LogHandler;
+
 import org.graalvm.home.Version;
 import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.Instrument;
 import org.graalvm.polyglot.Language;
 
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineFactory;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class GraalPyEngineFactory implements ScriptEngineFactory {
     public static final String LANGUAGE_ID = "python";
@@ -17,11 +23,102 @@ public final class GraalPyEngineFactory implements ScriptEngineFactory {
 
     static {
         System.setProperty("python.AutomaticAsyncActions", "false");
-        System.setProperty("polyglot.log.file", "/tmp/polyglot.log");
     }
 
-    private final Engine polyglotEngine = Engine.newBuilder().allowExperimentalOptions(true).option("engine.WarnInterpreterOnly", "false").build();
+    private final LogHandler logHandler = LogHandler.getDefault("graalpy");
+    private final Engine polyglotEngine = createEngine(Map.of());
+    // engines for contexts whose GLOBAL_SCOPE bindings carry engine options, see getPolyglotEngine(Map)
+    private final Map<Map<String, String>, Engine> optionEngines = new ConcurrentHashMap<>();
     private final Language language = polyglotEngine.getLanguages().get(LANGUAGE_ID);
+    private final AtomicInteger createdContexts = new AtomicInteger();
+    private final AtomicInteger openContexts = new AtomicInteger();
+
+    private Engine createEngine(Map<String, String> options) {
+        return Engine.newBuilder().allowExperimentalOptions(true).option("engine.WarnInterpreterOnly", "false")
+                .options(options).logHandler(logHandler).build();
+    }
+
+    /**
+     * Returns the polyglot engine shared by all contexts of the script engines of this factory.
+     */
+    public Engine getPolyglotEngine() {
+        return polyglotEngine;
+    }
+
+    /**
+     * Returns the engine for contexts that set the given engine options: the shared engine if
+     * there are none, otherwise an engine built with these options and shared by all contexts of
+     * the factory that set the same ones. Such engines live as long as the factory, and their
+     * cached sources are not included in {@link #getCachedSourceCount()}.
+     */
+    Engine getPolyglotEngine(Map<String, String> engineOptions) {
+        if (engineOptions.isEmpty()) {
+            return polyglotEngine;
+        }
+        return optionEngines.computeIfAbsent(Map.copyOf(engineOptions), this::createEngine);
+    }
+
+    /**
+     * Returns {@code true} if the option configures the engine or one of its instruments, e.g.
+     * {@code engine.*}, {@code compiler.*} or {@code cpusampler}, and cannot be set on a context
+     * of a shared engine.
+     */
+    boolean isEngineOption(String key) {
+        if (polyglotEngine.getOptions().get(key) != null) {
+            return true;
+        }
+        for (Instrument instrument : polyglotEngine.getInstruments().values()) {
+            if (instrument.getOptions().get(key) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void contextCreated() {
+        createdContexts.incrementAndGet();
+        openContexts.incrementAndGet();
+    }
+
+    void contextClosed() {
+        openContexts.decrementAndGet();
+    }
+
+    /**
+     * Returns the handler that writes the log of the shared engine.
+     */
+    public LogHandler getLogHandler() {
+        return logHandler;
+    }
+
+    /**
+     * Returns the number of contexts created on the shared engine so far.
+     */
+    public int getCreatedContextCount() {
+        return createdContexts.get();
+    }
+
+    /**
+     * Returns the number of contexts on the shared engine that have not been closed.
+     */
+    public int getOpenContextCount() {
+        return openContexts.get();
+    }
+
+    /**
+     * Returns the number of sources whose parsed code is cached by the shared engine.
+     */
+    public int getCachedSourceCount() {
+        return polyglotEngine.getCachedSources().size();
+    }
+
+    /**
+     * Returns a one-line summary of how much code is shared between the contexts of this factory.
+     */
+    public String getCodeSharingReport() {
+        return String.format("engine=%s contexts(created=%d, open=%d) cachedSources=%d",
+                getEngineName(), getCreatedContextCount(), getOpenContextCount(), getCachedSourceCount());
+    }
 
     @Override
     public String getEngineName() {
@@ -44,9 +44,12 @@ import javax.script.ScriptEngine;
 import javax.script.ScriptEngineFactory;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * A basic polyglot application that tries to exercise a simple hello world style program in all installed languages.
+ * Throughput and latency under load are measured by {@code ThroughputBenchmark} of the benchmarks module.
  */
 public class Main {
 
@@ -61,16 +64,22 @@ public class Main {
                 "    return n * fac(n - 1)\n" +
                 "\n" +
                 "fac(5)";
+        // a context is used by one thread at a time, so every thread gets its own engine
+        ScriptEngineFactory factory = engine.getFactory();
+        List<Thread> threads = new ArrayList<>();
         for (int i = 0; i < 10; i++) {
             Thread thread = new Thread(() -> {
                 try {
-                    Object eval = engine.eval(script);
+                    Object eval = factory.getScriptEngine().eval(script);
                     System.out.println(eval);
                 } catch (ScriptException e) {
                     throw new RuntimeException(e);
                 }
             });
             thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
             thread.join();
         }
     }
@@ -5,16 +5,43 @@ import org.graalvm.polyglot.Value;
 import javax.script.Bindings;
 import java.util.*;
 
-public final class PolyglotBindings implements Bindings {
-    private Value languageBindings;
-
-    PolyglotBindings(Value languageBindings) {
+/**
+ * Live view of the globals of a {@link PolyglotContext}. The key set is enumerated from the guest
+ * once per change of the globals made through the engine (evals, puts, removes) and values are
+ * only converted when they are read. Globals added or removed by Python code called through
+ * {@code invokeFunction} or {@code invokeMethod} show up in the key set after the next eval or put.
+ */
+public final class PolyglotBindings extends AbstractMap<String, Object> implements Bindings {
+    private final Value languageBindings;
+    private final PolyglotContext owner;
+    private final Set<Entry<String, Object>> entrySet = new EntrySet();
+    private volatile KeySnapshot keys;
+
+    PolyglotBindings(Value languageBindings, PolyglotContext owner) {
         this.languageBindings = languageBindings;
+        this.owner = owner;
+    }
+
+    /**
+     * Returns {@code true} if these are the globals of the given context.
+     */
+    boolean isBindingsOf(PolyglotContext context) {
+        return owner == context;
+    }
+
+    private Set<String> keys() {
+        int version = owner.getBindingsVersion();
+        KeySnapshot snapshot = keys;
+        if (snapshot == null || snapshot.version != version) {
+            snapshot = new KeySnapshot(Collections.unmodifiableSet(new LinkedHashSet<>(languageBindings.getMemberKeys())), version);
+            keys = snapshot;
+        }
+        return snapshot.keys;
     }
 
     @Override
     public int size() {
-        return keySet().size();
+        return keys().size();
     }
 
     @Override
@@ -24,8 +51,14 @@ public final class PolyglotBindings implements Bindings {
 
     @Override
     public boolean containsValue(Object value) {
-        for (String s : keySet()) {
-            if (get(s) == value) {
+        for (String s : keys()) {
+            Value member = languageBindings.getMember(s);
+            if (member == null) {
+                continue;
+            }
+            // converted guest objects are new wrappers on every read, they are equal if they wrap
+            // the same guest object
+            if (value instanceof Value ? member.equals(value) : Objects.equals(member.as(Object.class), value)) {
                 return true;
             }
         }
@@ -34,61 +67,39 @@ public final class PolyglotBindings implements Bindings {
 
     @Override
     public void clear() {
-        for (String s : keySet()) {
+        for (String s : keys()) {
             remove(s);
         }
     }
 
     @Override
     public Set<String> keySet() {
-        return languageBindings.getMemberKeys();
-    }
-
-    @Override
-    public Collection values() {
-        List values = new ArrayList<>();
-        for (String s : keySet()) {
-            values.add(get(s));
-        }
-        return values;
+        return keys();
     }
 
     @Override
     public Set<Entry<String, Object>> entrySet() {
-        Set<Entry<String, Object>> values = new HashSet<>();
-        for (String s : keySet()) {
-            values.add(new Entry<String, Object>() {
-                @Override
-                public String getKey() {
-                    return s;
-                }
-
-                @Override
-                public Object getValue() {
-                    return get(s);
-                }
-
-                @Override
-                public Object setValue(Object value) {
-                    return put(s, value);
-                }
-            });
-        }
-        return values;
+        return entrySet;
     }
 
     @Override
     public Object put(String name, Object value) {
         Object previous = get(name);
-        languageBindings.putMember(name, value);
+        bind(name, value);
         return previous;
     }
 
+    /**
+     * Sets the global without reading and converting the previous value like {@link #put} does.
+     */
+    public void bind(String name, Object value) {
+        languageBindings.putMember(name, owner.importValue(value));
+        owner.bindingsChanged();
+    }
+
     @Override
     public void putAll(Map<? extends String, ? extends Object> toMerge) {
-        for (Entry<? extends String, ? extends Object> e : toMerge.entrySet()) {
-            put(e.getKey(), e.getValue());
-        }
+        owner.putAll(toMerge);
     }
 
     @Override
@@ -116,9 +127,95 @@ public final class PolyglotBindings implements Bindings {
         Object prev = get(key);
         if (prev != null) {
             languageBindings.removeMember((String) key);
+            owner.bindingsChanged();
             return prev;
         } else {
             return null;
         }
     }
-}
\ No newline at end of file
+
+    private static final class KeySnapshot {
+        private final Set<String> keys;
+        private final int version;
+
+        KeySnapshot(Set<String> keys, int version) {
+            this.keys = keys;
+            this.version = version;
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<String, Object>> {
+        @Override
+        public int size() {
+            return PolyglotBindings.this.size();
+        }
+
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+            Iterator<String> iterator = keys().iterator();
+            return new Iterator<Entry<String, Object>>() {
+                private String current;
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Entry<String, Object> next() {
+                    current = iterator.next();
+                    return new LazyEntry(current);
+                }
+
+                @Override
+                public void remove() {
+                    if (current == null) {
+                        throw new IllegalStateException();
+                    }
+                    PolyglotBindings.this.remove(current);
+                    current = null;
+                }
+            };
+        }
+    }
+
+    /**
+     * An entry that converts its value only when it is read.
+     */
+    private final class LazyEntry implements Entry<String, Object> {
+        private final String key;
+
+        LazyEntry(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public Object getValue() {
+            return get(key);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            return put(key, value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            return key.equals(e.getKey()) && Objects.equals(getValue(), e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(getValue());
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package io.metersphere.python.scriptengine;
 
+import org.graalvm.polyglot.PolyglotException;
 import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
 
 import javax.script.*;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 
 public class PolyglotCompiledScript extends CompiledScript {
@@ -16,22 +22,79 @@ public class PolyglotCompiledScript extends CompiledScript {
 
     @Override
     public Object eval(ScriptContext context) throws ScriptException {
+        return eval(context, PolyglotEngine.TO_OBJECT);
+    }
+
+    /**
+     * Evaluates the script and returns the result without converting it to a Java object.
+     */
+    public Value evalToValue(ScriptContext context) throws ScriptException {
+        return eval(context, PolyglotEngine.TO_VALUE);
+    }
+
+    /**
+     * Evaluates the script and copies the result into plain Java objects, see
+     * {@link PolyglotValueExporter}.
+     */
+    public Object evalToJava(ScriptContext context) throws ScriptException {
+        return eval(context, PolyglotValueExporter::export);
+    }
+
+    /**
+     * Evaluates the script in the default context of the engine and converts the result to the
+     * given type.
+     *
+     * @throws ClassCastException if the result cannot be converted
+     */
+    public <T> T evalAs(Class<T> type) throws ScriptException {
+        return evalAs(engine.getContext(), type);
+    }
+
+    /**
+     * Evaluates the script and converts the result to the given type, see {@link Value#as(Class)}.
+     *
+     * @throws ClassCastException if the result cannot be converted
+     */
+    public <T> T evalAs(ScriptContext context, Class<T> type) throws ScriptException {
+        return eval(context, value -> value.as(type));
+    }
+
+    private <T> T eval(ScriptContext context, Function<Value, T> conversion) throws ScriptException {
         if (context instanceof PolyglotContext) {
-            return ((PolyglotContext) context).getContext().eval(source).as(Object.class);
+            try {
+                return conversion.apply(((PolyglotContext) context).eval(source));
+            } catch (PolyglotException e) {
+                throw PolyglotEngine.toScriptException(e);
+            }
         }
-        if (context instanceof SimpleScriptContext) {
-            context.getScopes().forEach((scope) -> {
-                Bindings bindings = context.getBindings(scope);
-                bindings.forEach((key, value) -> {
-                    getEngine().getContext().setAttribute(key, value, scope);
-                });
-            });
-            return engine.eval(source.getCharacters().toString(), getEngine().getContext());
+        if (context instanceof SimpleScriptContext && engine.getContext() instanceof PolyglotContext) {
+            PolyglotContext target = (PolyglotContext) engine.getContext();
+            target.putAll(collectBindings(context));
+            try {
+                return conversion.apply(target.eval(source));
+            } catch (PolyglotException e) {
+                throw PolyglotEngine.toScriptException(e);
+            }
         }
         throw new UnsupportedOperationException(
                 "Polyglot CompiledScript instances can only be evaluated in Polyglot.");
     }
 
+    /**
+     * Merges the bindings of all scopes, bindings of lower scopes take precedence.
+     */
+    private static Map<String, Object> collectBindings(ScriptContext context) {
+        Map<String, Object> values = new HashMap<>();
+        List<Integer> scopes = context.getScopes();
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Bindings bindings = context.getBindings(scopes.get(i));
+            if (bindings != null) {
+                values.putAll(bindings);
+            }
+        }
+        return values;
+    }
+
     @Override
     public ScriptEngine getEngine() {
         return engine;
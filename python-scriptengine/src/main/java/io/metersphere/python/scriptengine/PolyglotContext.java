@@ -1,50 +1,374 @@
 package io.metersphere.python.scriptengine;
 
+import io.metersphere.scriptengine.common.LogHandler;
+import io.metersphere.scriptengine.common.LruCache;
+import io.metersphere.scriptengine.common.NativeCopy;
+import io.metersphere.scriptengine.common.OutputMode;
+import io.metersphere.scriptengine.common.OutputSink;
+
 import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
 
 import javax.script.Bindings;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngineFactory;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static io.metersphere.python.scriptengine.GraalPyEngineFactory.LANGUAGE_ID;
 
+/**
+ * The ScriptContext of a {@link PolyglotEngine}, backed by a GraalPy context that is created on
+ * first use. String entries of the GLOBAL_SCOPE bindings set before that are passed as polyglot
+ * options. Context options go to the context. Engine and instrument options, e.g.
+ * {@code engine.Compilation}, cannot be set on a context of the engine shared by the factory, so
+ * such a context gets an engine of its own, shared with the contexts that set the same engine
+ * options.
+ */
 public final class PolyglotContext implements ScriptContext {
-    private Context context;
+    private volatile Context context;
     private final ScriptEngineFactory factory;
     private final PolyglotReader in;
     private final PolyglotWriter out;
     private final PolyglotWriter err;
+    private final OutputSink sink = new OutputSink(PolyglotEngine.DEFAULT_OUTPUT_MODE, PolyglotEngine.OUTPUT_RING_SIZE);
     private Bindings globalBindings;
+    private boolean closed;
+    private LruCache<Source, Value> parsedSources;
+    private Value bindAll;
+    private Value jsonLoads;
+    private Value parameterizedScriptMaker;
+    private Value resetGlobals;
+    private LruCache<List<Object>, Value> parameterizedFunctions;
+    private final Map<String, CachedFunction> functions = new ConcurrentHashMap<>();
+    private volatile int bindingsVersion;
+    private PolyglotBindings engineBindings;
+
+    private static final String PARAMETERIZED_SCRIPT_MAKER = """
+            def _parameterized_script_factory(g):
+                import ast
+                def make(script, parameter_names, file_name):
+                    tree = ast.parse(script, file_name)
+                    body = tree.body
+                    if body and isinstance(body[-1], ast.Expr):
+                        body[-1] = ast.copy_location(ast.Return(value=body[-1].value), body[-1])
+                    arguments = ast.arguments(posonlyargs=[], args=[ast.arg(arg=str(name)) for name in parameter_names],
+                                              kwonlyargs=[], kw_defaults=[], defaults=[])
+                    function = ast.FunctionDef(name='script', args=arguments, body=body or [ast.Pass()],
+                                               decorator_list=[], returns=None)
+                    module = ast.fix_missing_locations(ast.Module(body=[function], type_ignores=[]))
+                    namespace = {}
+                    exec(compile(module, file_name, 'exec'), g, namespace)
+                    return namespace['script']
+                return make
+            (_parameterized_script_factory(globals()), globals().pop('_parameterized_script_factory'))[0]
+            """;
 
     PolyglotContext(ScriptEngineFactory factory) {
         this.factory = factory;
         this.in = new PolyglotReader(new InputStreamReader(System.in));
-        this.out = new PolyglotWriter(new OutputStreamWriter(System.out));
-        this.err = new PolyglotWriter(new OutputStreamWriter(System.err));
+        this.out = new PolyglotWriter(new OutputStreamWriter(System.out), sink);
+        this.err = new PolyglotWriter(new OutputStreamWriter(System.err), sink);
     }
 
     Context getContext() {
-        if (context == null) {
-            Context.Builder builder = Context.newBuilder(LANGUAGE_ID)
-                    .in(this.in)
-                    .out(this.out)
-                    .err(this.err)
-                    .allowAllAccess(true);
-            Bindings globalBindings = getBindings(ScriptContext.GLOBAL_SCOPE);
-            if (globalBindings != null) {
-                for (Map.Entry<String, Object> entry : globalBindings.entrySet()) {
-                    Object value = entry.getValue();
-                    if (value instanceof String) {
+        Context result = context;
+        if (result == null) {
+            // the default context of an engine that is not thread-affine is used by all threads,
+            // only one may create it
+            synchronized (this) {
+                result = context;
+                if (result == null) {
+                    result = createContext();
+                    resetGlobals = result.eval(LANGUAGE_ID, "(lambda g, s: lambda: ([g.pop(k) for k in list(g) if k not in s], g.update(s)) and None)(globals(), dict(globals()))");
+                    context = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private Context createContext() {
+        Context.Builder builder = Context.newBuilder(LANGUAGE_ID)
+                .in(this.in)
+                .out(this.out)
+                .err(this.err)
+                .allowAllAccess(true);
+        Map<String, String> engineOptions = new HashMap<>();
+        Bindings globalBindings = getBindings(ScriptContext.GLOBAL_SCOPE);
+        if (globalBindings != null) {
+            for (Map.Entry<String, Object> entry : globalBindings.entrySet()) {
+                Object value = entry.getValue();
+                if (value instanceof String) {
+                    if (factory instanceof GraalPyEngineFactory && ((GraalPyEngineFactory) factory).isEngineOption(entry.getKey())) {
+                        engineOptions.put(entry.getKey(), (String) value);
+                    } else {
                         builder.option(entry.getKey(), (String) value);
                     }
                 }
             }
-            context = builder.build();
         }
-        return context;
+        if (factory instanceof GraalPyEngineFactory) {
+            // share parsed and compiled code with all other contexts of the factory that use the
+            // same engine options; an engine rejects engine options set on its contexts
+            builder.engine(((GraalPyEngineFactory) factory).getPolyglotEngine(engineOptions));
+        } else {
+            builder.logHandler(LogHandler.getDefault("graalpy"));
+        }
+        PolyglotEvents.ContextCreateEvent event = new PolyglotEvents.ContextCreateEvent();
+        event.begin();
+        Context created = builder.build();
+        event.commit();
+        if (factory instanceof GraalPyEngineFactory) {
+            ((GraalPyEngineFactory) factory).contextCreated();
+        }
+        return created;
+    }
+
+    boolean isInitialized() {
+        return context != null;
+    }
+
+    /**
+     * Restores the module globals to the state right after the context was created, so that a
+     * context handed to another thread does not see the variables of its previous thread. Modules
+     * imported by the previous thread stay loaded, as in a long-running interpreter.
+     */
+    synchronized void resetGlobals() {
+        if (context != null && !closed) {
+            resetGlobals.executeVoid();
+            bindingsChanged();
+            sink.clearCapturedOutput();
+        }
+    }
+
+    /**
+     * Parses the source in this context, reusing the executable of an earlier parse of an equal
+     * source.
+     */
+    Value parse(Source source) {
+        if (parsedSources == null) {
+            parsedSources = new LruCache<>(PolyglotEngine.SOURCE_CACHE_SIZE, PolyglotEngine.PARSE_CACHE_STATISTICS);
+        }
+        Value executable = parsedSources.get(source);
+        if (executable == null) {
+            PolyglotEvents.ParseEvent event = new PolyglotEvents.ParseEvent();
+            event.begin();
+            executable = getContext().parse(source);
+            event.report(source);
+            parsedSources.put(source, executable);
+        }
+        return executable;
+    }
+
+    /**
+     * Evaluates the source in this context using the cached parse result.
+     */
+    Value eval(Source source) {
+        PolyglotEvents.EvalEvent event = new PolyglotEvents.EvalEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long startCpu = PolyglotEngine.SCRIPT_STATISTICS.threadCpuTime();
+        long startAllocated = PolyglotEngine.SCRIPT_STATISTICS.threadAllocatedBytes();
+        boolean failed = true;
+        try {
+            Value result = parse(source).execute();
+            failed = false;
+            return result;
+        } finally {
+            PolyglotEngine.SCRIPT_STATISTICS.record(PolyglotScriptStatistics.Operation.EVAL, source, start, startCpu, startAllocated, failed);
+            event.report(source, failed);
+            bindingsChanged();
+            callFinished();
+        }
+    }
+
+    /**
+     * Flushes the guest output at the end of an eval, invocation or interface call if it is only
+     * flushed there, see {@code graalpy.stream-flush}.
+     */
+    void callFinished() {
+        if (PolyglotEngine.STREAM_FLUSH_ON_EVAL) {
+            flushOutput();
+        }
+    }
+
+    private void flushOutput() {
+        try {
+            out.flushWriter();
+            err.flushWriter();
+        } catch (IOException e) {
+            // the writer reports its own errors, e.g. PrintWriter.checkError()
+        }
+    }
+
+    /**
+     * Marks the globals as possibly changed, called after every eval and whenever globals are bound
+     * or removed from Java. Cached function handles are then checked against the current global
+     * before they are used again. Rebinding a global from inside a function called through
+     * {@link #getFunction(String)} is not tracked.
+     */
+    void bindingsChanged() {
+        bindingsVersion++;
+    }
+
+    int getBindingsVersion() {
+        return bindingsVersion;
+    }
+
+    /**
+     * Returns the ENGINE_SCOPE bindings, the same instance on every call.
+     */
+    PolyglotBindings getEngineBindings() {
+        PolyglotBindings bindings = engineBindings;
+        if (bindings == null) {
+            bindings = new PolyglotBindings(getContext().getBindings(LANGUAGE_ID), this);
+            engineBindings = bindings;
+        }
+        return bindings;
+    }
+
+    /**
+     * Returns the executable global of the given name or {@code null}. The handle is cached; once
+     * the globals may have changed it is kept as long as the global still refers to the same
+     * function.
+     */
+    Value getFunction(String name) {
+        int version = bindingsVersion;
+        CachedFunction cached = functions.get(name);
+        if (cached != null && cached.version == version) {
+            return cached.function;
+        }
+        Value member = getContext().getBindings(LANGUAGE_ID).getMember(name);
+        if (member == null || !member.canExecute()) {
+            functions.remove(name);
+            return null;
+        }
+        if (cached != null && cached.function.equals(member)) {
+            member = cached.function;
+        }
+        functions.put(name, new CachedFunction(member, version));
+        return member;
+    }
+
+    /**
+     * Converts a Java collection wrapped in a {@link NativeCopy} into a native Python object, or
+     * unwraps it if it cannot be converted.
+     */
+    Object importValue(Object value) {
+        if (!(value instanceof NativeCopy)) {
+            return value;
+        }
+        NativeCopy copy = (NativeCopy) value;
+        if (PolyglotCollectionImport.isCollection(copy.getValue())) {
+            String json = PolyglotCollectionImport.toJson(copy.getValue(), copy.getMaxSize());
+            if (json != null) {
+                if (jsonLoads == null) {
+                    jsonLoads = getContext().eval(LANGUAGE_ID, "__import__('json').loads");
+                }
+                return jsonLoads.execute(json);
+            }
+        }
+        return copy.getValue();
+    }
+
+    /**
+     * Installs all entries as globals of the context with a single guest call. The bindings of
+     * this context are its globals already and are not copied onto themselves.
+     */
+    void putAll(Map<? extends String, ?> values) {
+        if (values.isEmpty() || (values instanceof PolyglotBindings && ((PolyglotBindings) values).isBindingsOf(this))) {
+            return;
+        }
+        Object[] keys = new Object[values.size()];
+        Object[] vals = new Object[keys.length];
+        int i = 0;
+        for (Map.Entry<? extends String, ?> entry : values.entrySet()) {
+            keys[i] = entry.getKey();
+            vals[i] = importValue(entry.getValue());
+            i++;
+        }
+        if (bindAll == null) {
+            bindAll = getContext().eval(LANGUAGE_ID, "(lambda g: lambda keys, values: g.update(zip(keys, values)))(globals())");
+        }
+        PolyglotEvents.BindingsImportEvent event = new PolyglotEvents.BindingsImportEvent();
+        event.begin();
+        bindAll.execute(keys, vals);
+        event.bindings = keys.length;
+        event.commit();
+        bindingsChanged();
+    }
+
+    /**
+     * Compiles the script body into a Python function {@code script(*parameterNames)} whose
+     * globals are the globals of this context. The value of a trailing expression statement is
+     * returned, assignments are local to the call. The function of an earlier call with the same
+     * arguments is reused; it is cached here and not by the script, so that a script does not keep
+     * the contexts it ran in alive.
+     */
+    Value compileFunction(String script, String[] parameterNames, String fileName) {
+        if (parameterizedFunctions == null) {
+            parameterizedFunctions = new LruCache<>(PolyglotEngine.SOURCE_CACHE_SIZE, PolyglotEngine.FUNCTION_CACHE_STATISTICS);
+        }
+        List<Object> key = List.of(script, List.of(parameterNames), fileName);
+        Value function = parameterizedFunctions.get(key);
+        if (function == null) {
+            if (parameterizedScriptMaker == null) {
+                parameterizedScriptMaker = getContext().eval(LANGUAGE_ID, PARAMETERIZED_SCRIPT_MAKER);
+            }
+            function = parameterizedScriptMaker.execute(script, parameterNames, fileName);
+            parameterizedFunctions.put(key, function);
+        }
+        return function;
+    }
+
+    void close() {
+        if (context != null && !closed) {
+            closed = true;
+            context.close();
+            flushOutput();
+            if (factory instanceof GraalPyEngineFactory) {
+                ((GraalPyEngineFactory) factory).contextClosed();
+            }
+        }
+    }
+
+    /**
+     * Selects where the stdout and stderr output of this context goes, effective immediately.
+     */
+    public void setOutputMode(OutputMode mode) {
+        sink.setMode(Objects.requireNonNull(mode));
+    }
+
+    public OutputMode getOutputMode() {
+        return sink.getMode();
+    }
+
+    /**
+     * Returns the number of bytes written to stdout and stderr, in any output mode.
+     */
+    public long getOutputByteCount() {
+        return sink.getByteCount();
+    }
+
+    /**
+     * Returns the stdout and stderr output kept in {@link OutputMode#RING} mode, oldest
+     * first.
+     */
+    public String getCapturedOutput() {
+        return sink.getCapturedOutput();
+    }
+
+    public void clearCapturedOutput() {
+        sink.clearCapturedOutput();
     }
 
     @Override
@@ -66,7 +390,7 @@ public final class PolyglotContext implements ScriptContext {
     @Override
     public Bindings getBindings(int scope) {
         if (scope == ScriptContext.ENGINE_SCOPE) {
-            return new PolyglotBindings(getContext().getBindings(LANGUAGE_ID));
+            return getEngineBindings();
         } else if (scope == ScriptContext.GLOBAL_SCOPE) {
             return globalBindings;
         } else {
@@ -77,7 +401,7 @@ public final class PolyglotContext implements ScriptContext {
     @Override
     public void setAttribute(String name, Object value, int scope) {
         if (scope == ScriptContext.ENGINE_SCOPE) {
-            getBindings(scope).put(name, value);
+            getEngineBindings().bind(name, value);
         } else if (scope == ScriptContext.GLOBAL_SCOPE) {
             if (context == null) {
                 globalBindings.put(name, value);
@@ -164,29 +488,187 @@ public final class PolyglotContext implements ScriptContext {
         return List.of(ScriptContext.ENGINE_SCOPE, ScriptContext.GLOBAL_SCOPE);
     }
 
+    private static final class CachedFunction {
+        private final Value function;
+        private final int version;
+
+        CachedFunction(Value function, int version) {
+            this.function = function;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Encodes the characters of the ScriptContext reader as UTF-8 for the guest stdin.
+     */
     private static final class PolyglotReader extends InputStream {
         private volatile Reader reader;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharBuffer charBuffer = CharBuffer.allocate(PolyglotEngine.STREAM_BUFFER_SIZE);
+        private final ByteBuffer byteBuffer = ByteBuffer.allocate((int) encoder.maxBytesPerChar() * PolyglotEngine.STREAM_BUFFER_SIZE);
+        private Reader bufferedReader;
+        private boolean endOfInput;
 
         public PolyglotReader(InputStreamReader inputStreamReader) {
             this.reader = inputStreamReader;
+            byteBuffer.flip();
+        }
+
+        @Override
+        public synchronized int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return byteBuffer.get() & 0xFF;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(len, byteBuffer.remaining());
+            byteBuffer.get(b, off, count);
+            return count;
         }
 
         @Override
-        public int read() throws IOException {
-            return reader.read();
+        public synchronized int available() {
+            return bufferedReader == reader ? byteBuffer.remaining() : 0;
+        }
+
+        private boolean fill() throws IOException {
+            Reader current = reader;
+            if (current != bufferedReader) {
+                // bytes buffered from the previous reader are not delivered
+                bufferedReader = current;
+                charBuffer.clear();
+                byteBuffer.clear();
+                byteBuffer.flip();
+                encoder.reset();
+                endOfInput = false;
+            }
+            while (!byteBuffer.hasRemaining()) {
+                if (endOfInput) {
+                    return false;
+                }
+                int count = current.read(charBuffer.array(), charBuffer.position(), charBuffer.remaining());
+                if (count == -1) {
+                    endOfInput = true;
+                } else {
+                    charBuffer.position(charBuffer.position() + count);
+                }
+                charBuffer.flip();
+                byteBuffer.clear();
+                encoder.encode(charBuffer, byteBuffer, endOfInput);
+                if (endOfInput) {
+                    encoder.flush(byteBuffer);
+                }
+                charBuffer.compact();
+                byteBuffer.flip();
+            }
+            return true;
         }
     }
 
+    /**
+     * Decodes the UTF-8 guest stdout or stderr incrementally and passes the characters to the
+     * ScriptContext writer in blocks. Flushes reach the writer only if something was written since
+     * the last flush, and with {@code graalpy.stream-flush=eval} only at the end of an eval or
+     * a call from Java into the context.
+     */
     private static final class PolyglotWriter extends OutputStream {
         private volatile Writer writer;
+        private final OutputSink sink;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final ByteBuffer byteBuffer = ByteBuffer.allocate(PolyglotEngine.STREAM_BUFFER_SIZE);
+        private final CharBuffer charBuffer = CharBuffer.allocate(PolyglotEngine.STREAM_BUFFER_SIZE);
+        private Writer dirty;
 
-        public PolyglotWriter(OutputStreamWriter outputStreamWriter) {
+        public PolyglotWriter(OutputStreamWriter outputStreamWriter, OutputSink sink) {
             this.writer = outputStreamWriter;
+            this.sink = sink;
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            sink.count(1);
+            OutputMode mode = sink.getMode();
+            if (mode != OutputMode.PASSTHROUGH) {
+                if (mode == OutputMode.RING) {
+                    sink.capture(b);
+                }
+                return;
+            }
+            if (b >= 0 && b < 0x80 && byteBuffer.position() == 0) {
+                Writer current = writer;
+                current.write(b);
+                dirty = current;
+                return;
+            }
+            byteBuffer.put((byte) b);
+            decode();
         }
 
         @Override
-        public void write(int b) throws IOException {
-            writer.write(b);
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            sink.count(len);
+            OutputMode mode = sink.getMode();
+            if (mode != OutputMode.PASSTHROUGH) {
+                if (mode == OutputMode.RING) {
+                    sink.capture(b, off, len);
+                }
+                return;
+            }
+            while (len > 0) {
+                int count = Math.min(len, byteBuffer.remaining());
+                byteBuffer.put(b, off, count);
+                off += count;
+                len -= count;
+                decode();
+            }
+        }
+
+        /**
+         * An incomplete trailing UTF-8 sequence stays in the buffer until its remaining bytes
+         * arrive.
+         */
+        private void decode() throws IOException {
+            Writer current = writer;
+            byteBuffer.flip();
+            CoderResult result;
+            do {
+                result = decoder.decode(byteBuffer, charBuffer, false);
+                if (charBuffer.position() > 0) {
+                    current.write(charBuffer.array(), 0, charBuffer.position());
+                    charBuffer.clear();
+                    dirty = current;
+                }
+            } while (result.isOverflow());
+            byteBuffer.compact();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!PolyglotEngine.STREAM_FLUSH_ON_EVAL) {
+                flushWriter();
+            }
+        }
+
+        synchronized void flushWriter() throws IOException {
+            if (dirty != null) {
+                dirty.flush();
+                dirty = null;
+            }
         }
     }
 }
\ No newline at end of file
@@ -1,66 +1,331 @@
 package io.metersphere.python.scriptengine;
 
+import io.metersphere.scriptengine.common.CacheStatistics;
+import io.metersphere.scriptengine.common.LruCache;
+import io.metersphere.scriptengine.common.OutputMode;
+import io.metersphere.scriptengine.common.ScriptKeys;
+
 import org.graalvm.polyglot.PolyglotException;
 import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.SourceSection;
 import org.graalvm.polyglot.Value;
 
 import javax.script.*;
 import java.io.IOException;
 import java.io.Reader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 
 import static io.metersphere.python.scriptengine.GraalPyEngineFactory.LANGUAGE_ID;
 
 public final class PolyglotEngine implements ScriptEngine, Compilable, Invocable, AutoCloseable {
+    private static final String THREAD_CONTEXTS_SYSTEM_PROPERTY = "graalpy.thread-contexts";
+    private static final String MAX_THREAD_CONTEXTS_SYSTEM_PROPERTY = "graalpy.max-thread-contexts";
+    private static final String SOURCE_CACHE_SIZE_SYSTEM_PROPERTY = "graalpy.source-cache-size";
+    private static final String STREAM_BUFFER_SIZE_SYSTEM_PROPERTY = "graalpy.stream-buffer-size";
+    private static final String STREAM_FLUSH_SYSTEM_PROPERTY = "graalpy.stream-flush";
+    private static final String OUTPUT_MODE_SYSTEM_PROPERTY = "graalpy.output-mode";
+    private static final String OUTPUT_RING_SIZE_SYSTEM_PROPERTY = "graalpy.output-ring-size";
+    // file name of parameterized scripts compiled without a ScriptEngine.FILENAME attribute
+    static final String ANONYMOUS_SCRIPT = "<string>";
+    static final int SOURCE_CACHE_SIZE = Integer.getInteger(SOURCE_CACHE_SIZE_SYSTEM_PROPERTY, 256);
+    // size in chars and bytes of the buffers bridging guest stdin/stdout/stderr to the ScriptContext
+    static final int STREAM_BUFFER_SIZE = Math.max(16, Integer.getInteger(STREAM_BUFFER_SIZE_SYSTEM_PROPERTY, 1024));
+    // "always" (default) forwards every guest flush to the writer, "eval" only flushes at the end of an eval
+    static final boolean STREAM_FLUSH_ON_EVAL = "eval".equals(System.getProperty(STREAM_FLUSH_SYSTEM_PROPERTY, "always"));
+    static final OutputMode DEFAULT_OUTPUT_MODE = OutputMode.valueOf(System.getProperty(OUTPUT_MODE_SYSTEM_PROPERTY, "passthrough").toUpperCase(Locale.ROOT));
+    static final int OUTPUT_RING_SIZE = Integer.getInteger(OUTPUT_RING_SIZE_SYSTEM_PROPERTY, 64) * 1024;
+    private static final CacheStatistics SOURCE_CACHE_STATISTICS = new CacheStatistics();
+    static final CacheStatistics PARSE_CACHE_STATISTICS = new CacheStatistics();
+    static final CacheStatistics FUNCTION_CACHE_STATISTICS = new CacheStatistics();
+    // names of sources in the statistics and flight recorder events
+    static final ScriptKeys SCRIPT_KEYS = new ScriptKeys(SOURCE_CACHE_SIZE);
+    static final PolyglotScriptStatistics SCRIPT_STATISTICS = new PolyglotScriptStatistics();
+    private static final LruCache<String, Source> SOURCE_CACHE = new LruCache<>(SOURCE_CACHE_SIZE, SOURCE_CACHE_STATISTICS);
+    static final Function<Value, Object> TO_OBJECT = value -> value.as(Object.class);
+    static final Function<Value, Value> TO_VALUE = Function.identity();
+
+    static {
+        SCRIPT_STATISTICS.register();
+    }
+
     private final ScriptEngineFactory factory;
     private PolyglotContext defaultContext;
+    private final PolyglotThreadContexts threadContexts;
 
     PolyglotEngine(ScriptEngineFactory factory) {
+        this(factory, Boolean.getBoolean(THREAD_CONTEXTS_SYSTEM_PROPERTY));
+    }
+
+    /**
+     * @param threadAffine if {@code true}, every calling thread transparently gets its own default
+     *                     context. Contexts of dead threads are reused by new threads, and closed
+     *                     while more than {@code graalpy.max-thread-contexts} (default: the number
+     *                     of available processors) exist; threads beyond that number still get a
+     *                     context of their own.
+     */
+    PolyglotEngine(ScriptEngineFactory factory, boolean threadAffine) {
         this.factory = factory;
-        this.defaultContext = new PolyglotContext(factory);
+        if (threadAffine) {
+            int maxContexts = Integer.getInteger(MAX_THREAD_CONTEXTS_SYSTEM_PROPERTY, Runtime.getRuntime().availableProcessors());
+            this.threadContexts = new PolyglotThreadContexts(factory, maxContexts);
+        } else {
+            this.threadContexts = null;
+            this.defaultContext = new PolyglotContext(factory);
+        }
+    }
+
+    private PolyglotContext defaultContext() {
+        return threadContexts == null ? defaultContext : threadContexts.current();
+    }
+
+    /**
+     * Returns the number of live default contexts, which is more than one only in thread-affine
+     * mode.
+     */
+    public int getContextCount() {
+        return threadContexts == null ? 1 : threadContexts.size();
+    }
+
+    /**
+     * Returns the statistics of the JVM-wide cache that maps script text to {@link Source}
+     * instances. Its size is set with the {@code graalpy.source-cache-size} system property.
+     */
+    public static CacheStatistics getSourceCacheStatistics() {
+        return SOURCE_CACHE_STATISTICS;
+    }
+
+    /**
+     * Returns the statistics of the per context caches of parsed sources, summed over all contexts.
+     */
+    public static CacheStatistics getParseCacheStatistics() {
+        return PARSE_CACHE_STATISTICS;
+    }
+
+    /**
+     * Returns the statistics of the per context caches of parameterized script functions, summed
+     * over all contexts.
+     */
+    public static CacheStatistics getFunctionCacheStatistics() {
+        return FUNCTION_CACHE_STATISTICS;
+    }
+
+    /**
+     * Returns the JVM-wide eval, compile and invoke latencies of all scripts, which are also
+     * exposed through JMX.
+     */
+    public static PolyglotScriptStatistics getScriptStatistics() {
+        return SCRIPT_STATISTICS;
+    }
+
+    private static Source getSource(String script) {
+        Source src = SOURCE_CACHE.get(script);
+        if (src == null) {
+            src = Source.create(LANGUAGE_ID, script);
+            SOURCE_CACHE.put(script, src);
+        }
+        return src;
     }
 
     @Override
     public void close() {
-        defaultContext.getContext().close();
+        if (threadContexts == null) {
+            defaultContext.close();
+        } else {
+            threadContexts.close();
+        }
     }
 
     @Override
     public CompiledScript compile(String script) throws ScriptException {
-        Source src = Source.create(LANGUAGE_ID, script);
+        Source src = getSource(script);
+        long start = System.nanoTime();
+        boolean failed = true;
         try {
-            defaultContext.getContext().parse(src); // only for the side-effect of validating the source
+            defaultContext().parse(src); // validates the source and warms the parse cache
+            failed = false;
         } catch (PolyglotException e) {
-            throw new ScriptException(e);
+            throw toScriptException(e);
+        } finally {
+            SCRIPT_STATISTICS.record(PolyglotScriptStatistics.Operation.COMPILE, src, start, failed);
         }
         return new PolyglotCompiledScript(src, this);
     }
 
+    /**
+     * Compiles the script as the body of a function with the given parameters. The returned
+     * script is executed with positional arguments, or with the attributes named like the
+     * parameters when evaluated in a ScriptContext. The value of a trailing expression statement
+     * is returned; assignments are local to the call.
+     */
+    public PolyglotParameterizedScript compile(String script, String... parameterNames) throws ScriptException {
+        for (String parameterName : parameterNames) {
+            Objects.requireNonNull(parameterName, "parameter name can not be null");
+        }
+        Object fileName = getContext().getAttribute(ScriptEngine.FILENAME);
+        PolyglotParameterizedScript compiled = new PolyglotParameterizedScript(this, script, parameterNames.clone(),
+                fileName == null ? ANONYMOUS_SCRIPT : fileName.toString());
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            compiled.getFunction(defaultContext()); // validates the script
+            failed = false;
+        } catch (PolyglotException e) {
+            throw toScriptException(e);
+        } finally {
+            SCRIPT_STATISTICS.record(PolyglotScriptStatistics.Operation.COMPILE, compiled.getKey(), start, failed);
+        }
+        return compiled;
+    }
+
     @Override
     public CompiledScript compile(Reader script) throws ScriptException {
         Source src;
         try {
             src = Source.newBuilder(LANGUAGE_ID, script, "sourcefromreader").build();
-            defaultContext.getContext().parse(src); // only for the side-effect of validating the source
-        } catch (PolyglotException | IOException e) {
+        } catch (IOException e) {
             throw new ScriptException(e);
         }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            defaultContext().parse(src); // validates the source and warms the parse cache
+            failed = false;
+        } catch (PolyglotException e) {
+            throw toScriptException(e);
+        } finally {
+            SCRIPT_STATISTICS.record(PolyglotScriptStatistics.Operation.COMPILE, src, start, failed);
+        }
         return new PolyglotCompiledScript(src, this);
     }
 
     @Override
     public Object eval(String script, ScriptContext context) throws ScriptException {
+        return eval(script, context, TO_OBJECT);
+    }
+
+    private <T> T eval(String script, ScriptContext context, Function<Value, T> conversion) throws ScriptException {
         if (context instanceof PolyglotContext) {
             PolyglotContext c = (PolyglotContext) context;
             try {
-                return c.getContext().eval(LANGUAGE_ID, script).as(Object.class);
+                return conversion.apply(c.eval(getSource(script)));
             } catch (PolyglotException e) {
-                throw new ScriptException(e);
+                throw toScriptException(e);
             }
         } else {
             throw new ClassCastException("invalid context");
         }
     }
 
+    static ScriptException toScriptException(PolyglotException e) {
+        PolyglotEvents.ScriptExceptionEvent event = new PolyglotEvents.ScriptExceptionEvent();
+        if (event.isEnabled()) {
+            SourceSection location = e.getSourceLocation();
+            event.source = location != null && location.isAvailable() ? PolyglotEvents.sourceName(location.getSource()) : null;
+            event.message = e.getMessage();
+            event.hostException = e.isHostException();
+            event.commit();
+        }
+        return new ScriptException(e);
+    }
+
+    /**
+     * Evaluates the script in the default context and returns the result without converting it to
+     * a Java object.
+     */
+    public Value evalToValue(String script) throws ScriptException {
+        return eval(script, defaultContext(), TO_VALUE);
+    }
+
+    /**
+     * Evaluates the script and returns the result without converting it to a Java object.
+     */
+    public Value evalToValue(String script, ScriptContext context) throws ScriptException {
+        return eval(script, context, TO_VALUE);
+    }
+
+    /**
+     * Evaluates the script in the default context and converts the result to the given type, see
+     * {@link Value#as(Class)}.
+     *
+     * @throws ClassCastException if the result cannot be converted
+     */
+    public <T> T evalAs(String script, Class<T> type) throws ScriptException {
+        return eval(script, defaultContext(), value -> value.as(type));
+    }
+
+    /**
+     * Evaluates the script and converts the result to the given type, see {@link Value#as(Class)}.
+     *
+     * @throws ClassCastException if the result cannot be converted
+     */
+    public <T> T evalAs(String script, ScriptContext context, Class<T> type) throws ScriptException {
+        return eval(script, context, value -> value.as(type));
+    }
+
+    /**
+     * Evaluates the script in the default context and copies the result into plain Java objects,
+     * see {@link PolyglotValueExporter}.
+     *
+     * @throws IllegalArgumentException if the result is nested too deeply or contains a cycle
+     */
+    public Object evalToJava(String script) throws ScriptException {
+        return eval(script, defaultContext(), PolyglotValueExporter::export);
+    }
+
+    /**
+     * Evaluates the script and copies the result into plain Java objects, see
+     * {@link PolyglotValueExporter}.
+     *
+     * @throws IllegalArgumentException if the result is nested too deeply or contains a cycle
+     */
+    public Object evalToJava(String script, ScriptContext context) throws ScriptException {
+        return eval(script, context, PolyglotValueExporter::export);
+    }
+
+    /**
+     * Evaluates the script in the default context and returns the result as a boolean.
+     *
+     * @throws ClassCastException if the result is not a boolean
+     */
+    public boolean evalBoolean(String script) throws ScriptException {
+        return eval(script, defaultContext(), Value::asBoolean);
+    }
+
+    /**
+     * Evaluates the script in the default context and returns the result as a long.
+     *
+     * @throws ClassCastException if the result is not an int that fits into a long
+     */
+    public long evalLong(String script) throws ScriptException {
+        return eval(script, defaultContext(), Value::asLong);
+    }
+
+    /**
+     * Evaluates the script in the default context and returns the result as a double.
+     *
+     * @throws ClassCastException if the result is not a number that fits into a double
+     */
+    public double evalDouble(String script) throws ScriptException {
+        return eval(script, defaultContext(), Value::asDouble);
+    }
+
+    /**
+     * Evaluates the script in the default context and returns the result as a string.
+     *
+     * @throws ClassCastException if the result is neither a str nor {@code None}
+     */
+    public String evalString(String script) throws ScriptException {
+        return eval(script, defaultContext(), Value::asString);
+    }
+
     @Override
     public Object eval(Reader reader, ScriptContext context) throws ScriptException {
         Source src;
@@ -72,9 +337,9 @@ public final class PolyglotEngine implements ScriptEngine, Compilable, Invocable
         if (context instanceof PolyglotContext) {
             PolyglotContext c = (PolyglotContext) context;
             try {
-                return c.getContext().eval(src).as(Object.class);
+                return c.eval(src).as(Object.class);
             } catch (PolyglotException e) {
-                throw new ScriptException(e);
+                throw toScriptException(e);
             }
         } else {
             throw new ScriptException("invalid context");
@@ -83,54 +348,101 @@ public final class PolyglotEngine implements ScriptEngine, Compilable, Invocable
 
     @Override
     public Object eval(String script) throws ScriptException {
-        return eval(script, defaultContext);
+        return eval(script, defaultContext());
     }
 
     @Override
     public Object eval(Reader reader) throws ScriptException {
-        return eval(reader, defaultContext);
+        return eval(reader, defaultContext());
     }
 
     @Override
     public Object eval(String script, Bindings n) throws ScriptException {
-        n.forEach((key, value) -> defaultContext.getBindings(ScriptContext.ENGINE_SCOPE).put(key, value));
-        return eval(script);
+        PolyglotContext context = defaultContext();
+        context.putAll(n);
+        return eval(script, context);
     }
 
     @Override
     public Object eval(Reader reader, Bindings n) throws ScriptException {
-        n.forEach((key, value) -> defaultContext.getBindings(ScriptContext.ENGINE_SCOPE).put(key, value));
-        return eval(reader);
+        PolyglotContext context = defaultContext();
+        context.putAll(n);
+        return eval(reader, context);
+    }
+
+    /**
+     * Selects where the stdout and stderr output of scripts goes, effective immediately for all
+     * default contexts of the engine and without rebuilding them. The initial mode is set with the
+     * {@code graalpy.output-mode} system property ({@code passthrough}, {@code discard} or
+     * {@code ring}).
+     */
+    public void setOutputMode(OutputMode mode) {
+        if (threadContexts == null) {
+            defaultContext.setOutputMode(mode);
+        } else {
+            threadContexts.setOutputMode(mode);
+        }
+    }
+
+    public OutputMode getOutputMode() {
+        return defaultContext().getOutputMode();
+    }
+
+    /**
+     * Returns the number of bytes written to stdout and stderr by the default context, see
+     * {@link PolyglotContext#getOutputByteCount()}.
+     */
+    public long getOutputByteCount() {
+        return defaultContext().getOutputByteCount();
+    }
+
+    /**
+     * Returns the output captured in {@link OutputMode#RING} mode by the default context,
+     * see {@link PolyglotContext#getCapturedOutput()}.
+     */
+    public String getCapturedOutput() {
+        return defaultContext().getCapturedOutput();
+    }
+
+    /**
+     * Sets all entries as globals of the default context with a single guest call.
+     */
+    public void bindAll(Map<String, ?> values) {
+        defaultContext().putAll(values);
     }
 
     @Override
     public void put(String key, Object value) {
-        defaultContext.getBindings(ScriptContext.ENGINE_SCOPE).put(key, value);
+        defaultContext().getEngineBindings().bind(key, value);
     }
 
     @Override
     public Object get(String key) {
-        return defaultContext.getBindings(ScriptContext.ENGINE_SCOPE).get(key);
+        return defaultContext().getBindings(ScriptContext.ENGINE_SCOPE).get(key);
     }
 
     @Override
     public Bindings getBindings(int scope) {
-        return defaultContext.getBindings(scope);
+        return defaultContext().getBindings(scope);
     }
 
     @Override
     public void setBindings(Bindings bindings, int scope) {
-        defaultContext.setBindings(bindings, scope);
+        if (threadContexts != null && scope == ScriptContext.GLOBAL_SCOPE) {
+            threadContexts.setGlobalBindings(bindings);
+        } else {
+            defaultContext().setBindings(bindings, scope);
+        }
     }
 
     @Override
     public Bindings createBindings() {
-        return defaultContext.getBindings(ScriptContext.ENGINE_SCOPE);
+        return defaultContext().getBindings(ScriptContext.ENGINE_SCOPE);
     }
 
     @Override
     public ScriptContext getContext() {
-        return defaultContext;
+        return defaultContext();
     }
 
     @Override
@@ -146,30 +458,119 @@ public final class PolyglotEngine implements ScriptEngine, Compilable, Invocable
     @Override
     public Object invokeMethod(Object thiz, String name, Object... args)
             throws ScriptException, NoSuchMethodException {
+        PolyglotEvents.InvokeEvent event = new PolyglotEvents.InvokeEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long startCpu = SCRIPT_STATISTICS.threadCpuTime();
+        long startAllocated = SCRIPT_STATISTICS.threadAllocatedBytes();
+        boolean failed = true;
         try {
-            Value receiver = defaultContext.getContext().asValue(thiz);
+            Value receiver = defaultContext().getContext().asValue(thiz);
             if (receiver.canInvokeMember(name)) {
-                return receiver.invokeMember(name, args).as(Object.class);
+                Object result = receiver.invokeMember(name, args).as(Object.class);
+                failed = false;
+                return result;
             } else {
                 throw new NoSuchMethodException(name);
             }
         } catch (PolyglotException e) {
-            throw new ScriptException(e);
+            throw toScriptException(e);
+        } finally {
+            SCRIPT_STATISTICS.record(PolyglotScriptStatistics.Operation.INVOKE, name, start, startCpu, startAllocated, failed);
+            event.report(name, failed);
+            defaultContext().callFinished();
         }
     }
 
     @Override
     public Object invokeFunction(String name, Object... args) throws ScriptException, NoSuchMethodException {
-        throw new UnsupportedOperationException();
+        Value function;
+        try {
+            function = defaultContext().getFunction(name);
+        } catch (PolyglotException e) {
+            throw toScriptException(e);
+        }
+        if (function == null) {
+            throw new NoSuchMethodException(name);
+        }
+        PolyglotEvents.InvokeEvent event = new PolyglotEvents.InvokeEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long startCpu = SCRIPT_STATISTICS.threadCpuTime();
+        long startAllocated = SCRIPT_STATISTICS.threadAllocatedBytes();
+        boolean failed = true;
+        try {
+            Object result = function.execute(args).as(Object.class);
+            failed = false;
+            return result;
+        } catch (PolyglotException e) {
+            throw toScriptException(e);
+        } finally {
+            SCRIPT_STATISTICS.record(PolyglotScriptStatistics.Operation.INVOKE, name, start, startCpu, startAllocated, failed);
+            event.report(name, failed);
+            defaultContext().callFinished();
+        }
     }
 
+    /**
+     * Returns an implementation of the interface whose methods call the global functions of the
+     * same name, or {@code null} if not all abstract methods have a matching function.
+     */
     @Override
-    public Object getInterface(Class interfaceClass) {
-        throw new UnsupportedOperationException();
+    public <T> T getInterface(Class<T> interfaceClass) {
+        if (interfaceClass == null || !interfaceClass.isInterface()) {
+            throw new IllegalArgumentException("interface Class expected in getInterface");
+        }
+        for (Method method : interfaceClass.getMethods()) {
+            if (Modifier.isAbstract(method.getModifiers()) && defaultContext().getFunction(method.getName()) == null) {
+                return null;
+            }
+        }
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return interfaceClass.getName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                }
+            }
+            Value function = defaultContext().getFunction(method.getName());
+            if (function == null) {
+                if (method.isDefault()) {
+                    return InvocationHandler.invokeDefault(proxy, method, args);
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+            try {
+                Value result = function.execute(args == null ? new Object[0] : args);
+                return method.getReturnType() == void.class ? null : result.as(method.getReturnType());
+            } finally {
+                defaultContext().callFinished();
+            }
+        };
+        return interfaceClass.cast(Proxy.newProxyInstance(interfaceClass.getClassLoader(), new Class<?>[]{interfaceClass}, handler));
     }
 
     @Override
     public Object getInterface(Object thiz, Class interfaceClass) {
-        return defaultContext.getContext().asValue(thiz).as(interfaceClass);
+        PolyglotContext context = defaultContext();
+        Object target = context.getContext().asValue(thiz).as(interfaceClass);
+        if (!STREAM_FLUSH_ON_EVAL) {
+            return target;
+        }
+        // flush after every call, like after an eval
+        InvocationHandler handler = (proxy, method, args) -> {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                context.callFinished();
+            }
+        };
+        return Proxy.newProxyInstance(interfaceClass.getClassLoader(), new Class<?>[]{interfaceClass}, handler);
     }
 }
\ No newline at end of file
@@ -0,0 +1,129 @@
+package io.metersphere.python.scriptengine;
+
+import org.graalvm.polyglot.Source;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder events of {@link PolyglotEngine} and {@link PolyglotContext}, so that script
+ * time shows up next to GC, lock and I/O events in a recording. The events are disabled by default
+ * and enabled in a JFR settings file or on the command line, e.g.
+ * {@code -XX:StartFlightRecording:+io.metersphere.python.Eval#enabled=true}. A disabled event
+ * costs an allocation that the JIT removes and a flag check. The emitting thread is part of every
+ * event.
+ */
+final class PolyglotEvents {
+
+    private static final String CATEGORY = "MeterSphere";
+    private static final String SUB_CATEGORY = "Python";
+
+    private PolyglotEvents() {
+    }
+
+    /**
+     * Returns the name the script statistics use for the source.
+     */
+    static String sourceName(Source source) {
+        return PolyglotEngine.SCRIPT_KEYS.of(source);
+    }
+
+    @Name("io.metersphere.python.ContextCreate")
+    @Label("Python Context Create")
+    @Description("Build of a polyglot context")
+    @Category({CATEGORY, SUB_CATEGORY})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class ContextCreateEvent extends Event {
+    }
+
+    @Name("io.metersphere.python.Parse")
+    @Label("Python Parse")
+    @Description("Parse of a source that was not in the parse cache of the context")
+    @Category({CATEGORY, SUB_CATEGORY})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class ParseEvent extends Event {
+        @Label("Source")
+        String source;
+
+        void report(Source parsed) {
+            if (shouldCommit()) {
+                source = sourceName(parsed);
+                commit();
+            }
+        }
+    }
+
+    @Name("io.metersphere.python.Eval")
+    @Label("Python Eval")
+    @Description("Evaluation of a script in a context")
+    @Category({CATEGORY, SUB_CATEGORY})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class EvalEvent extends Event {
+        @Label("Source")
+        String source;
+        @Label("Failed")
+        boolean failed;
+
+        void report(Source evaluated, boolean evalFailed) {
+            if (shouldCommit()) {
+                source = sourceName(evaluated);
+                failed = evalFailed;
+                commit();
+            }
+        }
+    }
+
+    @Name("io.metersphere.python.Invoke")
+    @Label("Python Invoke")
+    @Description("Call of a script function by invokeFunction, invokeMethod or a parameterized script")
+    @Category({CATEGORY, SUB_CATEGORY})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class InvokeEvent extends Event {
+        @Label("Function")
+        String function;
+        @Label("Failed")
+        boolean failed;
+
+        void report(String name, boolean invokeFailed) {
+            if (shouldCommit()) {
+                function = name;
+                failed = invokeFailed;
+                commit();
+            }
+        }
+    }
+
+    @Name("io.metersphere.python.BindingsImport")
+    @Label("Python Bindings Import")
+    @Description("Import of Java values into the globals of a context with a single guest call")
+    @Category({CATEGORY, SUB_CATEGORY})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class BindingsImportEvent extends Event {
+        @Label("Bindings")
+        int bindings;
+    }
+
+    @Name("io.metersphere.python.ScriptException")
+    @Label("Python Script Exception")
+    @Description("Conversion of a guest or host exception into a ScriptException")
+    @Category({CATEGORY, SUB_CATEGORY})
+    @Enabled(false)
+    static final class ScriptExceptionEvent extends Event {
+        @Label("Source")
+        String source;
+        @Label("Message")
+        String message;
+        @Label("Host Exception")
+        boolean hostException;
+    }
+}
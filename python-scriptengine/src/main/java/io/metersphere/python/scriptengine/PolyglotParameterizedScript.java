@@ -0,0 +1,110 @@
+package io.metersphere.python.scriptengine;
+
+import io.metersphere.scriptengine.common.ScriptKeys;
+
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.Value;
+
+import javax.script.*;
+import java.util.function.Function;
+
+/**
+ * A script compiled as the body of a Python function with named parameters, see
+ * {@link PolyglotEngine#compile(String, String...)}. Inputs are passed as call arguments instead
+ * of being written to the globals before every evaluation.
+ */
+public final class PolyglotParameterizedScript extends CompiledScript {
+    private final PolyglotEngine engine;
+    private final String script;
+    private final String[] parameterNames;
+    private final String fileName;
+    // name in the statistics and flight recorder events, the file name or a hash of the script
+    private final String key;
+
+    PolyglotParameterizedScript(PolyglotEngine engine, String script, String[] parameterNames, String fileName) {
+        this.engine = engine;
+        this.script = script;
+        this.parameterNames = parameterNames;
+        this.fileName = fileName;
+        this.key = PolyglotEngine.ANONYMOUS_SCRIPT.equals(fileName) ? ScriptKeys.contentKey(fileName, script) : fileName;
+    }
+
+    /**
+     * Returns the declared parameter names in positional order.
+     */
+    public String[] getParameterNames() {
+        return parameterNames.clone();
+    }
+
+    /**
+     * Calls the script in the default context of the engine with positional arguments.
+     */
+    public Object invoke(Object... args) throws ScriptException {
+        return invoke((PolyglotContext) engine.getContext(), args, PolyglotEngine.TO_OBJECT);
+    }
+
+    /**
+     * Calls the script like {@link #invoke(Object...)} and returns the result without any
+     * conversion.
+     */
+    public Value invokeValue(Object... args) throws ScriptException {
+        return invoke((PolyglotContext) engine.getContext(), args, PolyglotEngine.TO_VALUE);
+    }
+
+    /**
+     * Calls the script like {@link #invoke(Object...)} and converts the result to the given type.
+     *
+     * @throws ClassCastException if the result cannot be converted
+     */
+    public <T> T invokeAs(Class<T> type, Object... args) throws ScriptException {
+        return invoke((PolyglotContext) engine.getContext(), args, value -> value.as(type));
+    }
+
+    /**
+     * Calls the script with the values of the attributes named like the parameters. Contexts
+     * other than the ones of the engine only supply the arguments, the script runs in the default
+     * context.
+     */
+    @Override
+    public Object eval(ScriptContext context) throws ScriptException {
+        Object[] args = new Object[parameterNames.length];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = context.getAttribute(parameterNames[i]);
+        }
+        PolyglotContext target = context instanceof PolyglotContext ? (PolyglotContext) context : (PolyglotContext) engine.getContext();
+        return invoke(target, args, PolyglotEngine.TO_OBJECT);
+    }
+
+    private <T> T invoke(PolyglotContext context, Object[] args, Function<Value, T> conversion) throws ScriptException {
+        PolyglotEvents.InvokeEvent event = new PolyglotEvents.InvokeEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long startCpu = PolyglotEngine.SCRIPT_STATISTICS.threadCpuTime();
+        long startAllocated = PolyglotEngine.SCRIPT_STATISTICS.threadAllocatedBytes();
+        boolean failed = true;
+        try {
+            T result = conversion.apply(getFunction(context).execute(args));
+            failed = false;
+            return result;
+        } catch (PolyglotException e) {
+            throw PolyglotEngine.toScriptException(e);
+        } finally {
+            PolyglotEngine.SCRIPT_STATISTICS.record(PolyglotScriptStatistics.Operation.INVOKE, key, start, startCpu, startAllocated, failed);
+            event.report(key, failed);
+            context.callFinished();
+        }
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    Value getFunction(PolyglotContext context) {
+        return context.compileFunction(script, parameterNames, fileName);
+    }
+
+    @Override
+    public ScriptEngine getEngine() {
+        return engine;
+    }
+}
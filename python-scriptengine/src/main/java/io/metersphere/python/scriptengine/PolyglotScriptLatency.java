@@ -0,0 +1,88 @@
+package io.metersphere.python.scriptengine;
+
+import io.metersphere.scriptengine.common.LatencyHistogram;
+
+/**
+ * Snapshot of the latencies and resource usage of one operation on one script, see
+ * {@link PolyglotScriptStatistics#getLatencies()}. Latencies are in microseconds, the CPU time and
+ * allocated bytes are totals over all calls and only recorded with resource accounting enabled.
+ */
+public final class PolyglotScriptLatency {
+
+    private final String operation;
+    private final String script;
+    private final long count;
+    private final long errorCount;
+    private final double meanMicros;
+    private final double p50Micros;
+    private final double p99Micros;
+    private final double maxMicros;
+    private final double cpuMillis;
+    private final long allocatedBytes;
+
+    PolyglotScriptLatency(String operation, String script, LatencyHistogram histogram, long cpuNanos, long allocatedBytes) {
+        this.operation = operation;
+        this.script = script;
+        this.count = histogram.getCount();
+        this.errorCount = histogram.getErrorCount();
+        this.meanMicros = histogram.getMeanNanos() / 1000;
+        this.p50Micros = histogram.getPercentileNanos(0.5) / 1000.0;
+        this.p99Micros = histogram.getPercentileNanos(0.99) / 1000.0;
+        this.maxMicros = histogram.getMaxNanos() / 1000.0;
+        this.cpuMillis = cpuNanos / 1e6;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * Returns {@code eval}, {@code compile} or {@code invoke}.
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * Returns the file name of the script, the name of the invoked function, or the source name
+     * followed by the hash of the content, e.g. {@code Unnamed#<hash>}, for anonymous scripts.
+     */
+    public String getScript() {
+        return script;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+
+    public double getP50Micros() {
+        return p50Micros;
+    }
+
+    public double getP99Micros() {
+        return p99Micros;
+    }
+
+    public double getMaxMicros() {
+        return maxMicros;
+    }
+
+    public double getCpuMillis() {
+        return cpuMillis;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s count=%d errors=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus cpu=%.1fms allocated=%dB",
+                operation, script, count, errorCount, meanMicros, p50Micros, p99Micros, maxMicros, cpuMillis, allocatedBytes);
+    }
+}
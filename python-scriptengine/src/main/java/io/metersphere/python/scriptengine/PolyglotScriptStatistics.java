@@ -0,0 +1,233 @@
+package io.metersphere.python.scriptengine;
+
+import io.metersphere.scriptengine.common.LatencyHistogram;
+
+import org.graalvm.polyglot.Source;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JVM-wide eval, compile and invoke latencies of the scripts run by {@link PolyglotEngine}s, with
+ * one {@link LatencyHistogram} per operation and script. Scripts read from a file are identified
+ * by their path, parameterized scripts compiled with a {@code ScriptEngine.FILENAME} by that name,
+ * invocations by the function name and all other scripts by their source name and a hash of their
+ * content, e.g. {@code Unnamed#<hash>}, the same names the flight recorder events report. At most
+ * {@code graalpy.script-statistics-max-scripts} (default 1000) scripts per operation are tracked
+ * separately, the rest are recorded as {@code <other>}.
+ * <p>
+ * Recording costs two {@code System.nanoTime()} calls, a map lookup and a few atomic increments,
+ * plus hashing the text of an anonymous script the first time it runs, so
+ * it is enabled unless the {@code graalpy.script-statistics} system property is {@code false}. The
+ * statistics are registered with the platform MBean server as {@value #OBJECT_NAME}.
+ * <p>
+ * Resource accounting additionally samples the CPU time and the allocated bytes of the current
+ * thread around every eval and invoke, see {@link #setResourceAccountingEnabled(boolean)}. It is
+ * off unless the {@code graalpy.script-resource-accounting} system property is {@code true},
+ * because reading the thread CPU time is a system call. Nested calls, e.g. a Python function
+ * invoked from a host callback during an eval, are charged to both scripts.
+ */
+public final class PolyglotScriptStatistics implements PolyglotScriptStatisticsMXBean {
+
+    public static final String OBJECT_NAME = "io.metersphere.python.scriptengine:type=ScriptStatistics";
+
+    private static final String SCRIPT_STATISTICS_SYSTEM_PROPERTY = "graalpy.script-statistics";
+    private static final String SCRIPT_STATISTICS_MAX_SCRIPTS_SYSTEM_PROPERTY = "graalpy.script-statistics-max-scripts";
+    private static final String SCRIPT_RESOURCE_ACCOUNTING_SYSTEM_PROPERTY = "graalpy.script-resource-accounting";
+    private static final String OTHER_SCRIPTS = "<other>";
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME_SUPPORTED = THREADS.isCurrentThreadCpuTimeSupported();
+    private static final boolean ALLOCATED_BYTES_SUPPORTED = THREADS instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemorySupported();
+    // returned when resource accounting is off
+    static final long NOT_SAMPLED = -1;
+
+    enum Operation {
+        EVAL, COMPILE, INVOKE
+    }
+
+    private final int maxScripts = Integer.getInteger(SCRIPT_STATISTICS_MAX_SCRIPTS_SYSTEM_PROPERTY, 1000);
+    private final Map<Operation, Map<String, Entry>> entries = new EnumMap<>(Operation.class);
+    private volatile boolean enabled = !"false".equals(System.getProperty(SCRIPT_STATISTICS_SYSTEM_PROPERTY));
+    private volatile boolean resourceAccounting = Boolean.getBoolean(SCRIPT_RESOURCE_ACCOUNTING_SYSTEM_PROPERTY);
+
+    PolyglotScriptStatistics() {
+        for (Operation operation : Operation.values()) {
+            entries.put(operation, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Registers the statistics with the platform MBean server, unless statistics of another class
+     * loader were registered first.
+     */
+    void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException | SecurityException e) {
+            // the statistics stay available through PolyglotEngine.getScriptStatistics()
+        }
+    }
+
+    /**
+     * Returns the CPU time of the current thread in nanoseconds, or {@link #NOT_SAMPLED} if
+     * resource accounting is off.
+     */
+    long threadCpuTime() {
+        return resourceAccounting && enabled && CPU_TIME_SUPPORTED ? THREADS.getCurrentThreadCpuTime() : NOT_SAMPLED;
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread so far, or {@link #NOT_SAMPLED} if
+     * resource accounting is off.
+     */
+    long threadAllocatedBytes() {
+        return resourceAccounting && enabled && ALLOCATED_BYTES_SUPPORTED
+                ? ((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes() : NOT_SAMPLED;
+    }
+
+    /**
+     * Records the latency of an operation on a source that started at {@code startNanos}.
+     */
+    void record(Operation operation, Source source, long startNanos, boolean error) {
+        record(operation, source, startNanos, NOT_SAMPLED, NOT_SAMPLED, error);
+    }
+
+    /**
+     * Records the latency of an operation on a source that started at {@code startNanos}, and the
+     * resources used since {@link #threadCpuTime()} and {@link #threadAllocatedBytes()} returned
+     * {@code startCpuNanos} and {@code startAllocatedBytes}.
+     */
+    void record(Operation operation, Source source, long startNanos, long startCpuNanos, long startAllocatedBytes, boolean error) {
+        if (enabled) {
+            entry(operation, PolyglotEngine.SCRIPT_KEYS.of(source)).record(startNanos, startCpuNanos, startAllocatedBytes, error);
+        }
+    }
+
+    /**
+     * Records the latency of an operation on the named function or parameterized script that
+     * started at {@code startNanos}.
+     */
+    void record(Operation operation, String functionName, long startNanos, boolean error) {
+        record(operation, functionName, startNanos, NOT_SAMPLED, NOT_SAMPLED, error);
+    }
+
+    /**
+     * Records the latency and resources of an invocation of the named function or parameterized
+     * script, see {@link #record(Operation, Source, long, long, long, boolean)}.
+     */
+    void record(Operation operation, String functionName, long startNanos, long startCpuNanos, long startAllocatedBytes, boolean error) {
+        if (enabled) {
+            entry(operation, functionName).record(startNanos, startCpuNanos, startAllocatedBytes, error);
+        }
+    }
+
+    private Entry entry(Operation operation, String name) {
+        Map<String, Entry> scripts = entries.get(operation);
+        Entry entry = scripts.get(name);
+        if (entry == null) {
+            String key = scripts.size() >= maxScripts ? OTHER_SCRIPTS : name;
+            entry = scripts.computeIfAbsent(key, Entry::new);
+        }
+        return entry;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean isResourceAccountingEnabled() {
+        return resourceAccounting;
+    }
+
+    @Override
+    public void setResourceAccountingEnabled(boolean enabled) {
+        this.resourceAccounting = enabled;
+    }
+
+    @Override
+    public int getScriptCount() {
+        int count = 0;
+        for (Map<String, Entry> scripts : entries.values()) {
+            count += scripts.size();
+        }
+        return count;
+    }
+
+    @Override
+    public List<PolyglotScriptLatency> getLatencies() {
+        return snapshot(Comparator.comparingDouble(PolyglotScriptLatency::getP99Micros).reversed(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<PolyglotScriptLatency> getTopScriptsByCpuTime(int limit) {
+        return snapshot(Comparator.comparingDouble(PolyglotScriptLatency::getCpuMillis).reversed(), limit);
+    }
+
+    @Override
+    public List<PolyglotScriptLatency> getTopScriptsByAllocation(int limit) {
+        return snapshot(Comparator.comparingLong(PolyglotScriptLatency::getAllocatedBytes).reversed(), limit);
+    }
+
+    private List<PolyglotScriptLatency> snapshot(Comparator<PolyglotScriptLatency> order, int limit) {
+        List<PolyglotScriptLatency> latencies = new ArrayList<>();
+        for (Map.Entry<Operation, Map<String, Entry>> scripts : entries.entrySet()) {
+            String operation = scripts.getKey().name().toLowerCase(Locale.ROOT);
+            for (Entry entry : scripts.getValue().values()) {
+                latencies.add(new PolyglotScriptLatency(operation, entry.name, entry.histogram, entry.cpuNanos.sum(), entry.allocatedBytes.sum()));
+            }
+        }
+        latencies.sort(order);
+        return latencies.size() > limit ? new ArrayList<>(latencies.subList(0, Math.max(0, limit))) : latencies;
+    }
+
+    @Override
+    public void reset() {
+        for (Map<String, Entry> scripts : entries.values()) {
+            scripts.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        for (PolyglotScriptLatency latency : getLatencies()) {
+            report.append(latency).append(System.lineSeparator());
+        }
+        return report.toString();
+    }
+
+    private static final class Entry {
+        private final String name;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final LongAdder cpuNanos = new LongAdder();
+        private final LongAdder allocatedBytes = new LongAdder();
+
+        Entry(String name) {
+            this.name = name;
+        }
+
+        void record(long startNanos, long startCpuNanos, long startAllocatedBytes, boolean error) {
+            histogram.record(System.nanoTime() - startNanos, error);
+            // the start values are not sampled if accounting was switched on in between
+            if (startCpuNanos != NOT_SAMPLED) {
+                cpuNanos.add(Math.max(0, THREADS.getCurrentThreadCpuTime() - startCpuNanos));
+            }
+            if (startAllocatedBytes != NOT_SAMPLED) {
+                allocatedBytes.add(Math.max(0, ((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes() - startAllocatedBytes));
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package io.metersphere.python.scriptengine;
+
+import io.metersphere.scriptengine.common.OutputMode;
+
+import javax.script.Bindings;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngineFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps each calling thread to its own {@link PolyglotContext}. A context is never used by two live
+ * threads at the same time, since neither its caches nor its globals are safe for concurrent use.
+ * The context of a thread that died is handed to the next new thread with its globals reset. If
+ * more threads than {@code maxContexts} are alive, the extra threads get contexts of their own as
+ * well, and contexts left over by dead threads are closed as soon as more than
+ * {@code maxContexts} exist. GLOBAL_SCOPE bindings are shared by all contexts and can only be
+ * replaced while none is initialized.
+ */
+final class PolyglotThreadContexts implements AutoCloseable {
+    private final ScriptEngineFactory factory;
+    private final int maxContexts;
+    private final Map<Thread, PolyglotContext> assigned = new ConcurrentHashMap<>();
+    private final List<PolyglotContext> contexts = new ArrayList<>();
+    private Bindings globalBindings;
+    private OutputMode outputMode;
+
+    PolyglotThreadContexts(ScriptEngineFactory factory, int maxContexts) {
+        this.factory = factory;
+        this.maxContexts = Math.max(1, maxContexts);
+    }
+
+    PolyglotContext current() {
+        PolyglotContext context = assigned.get(Thread.currentThread());
+        if (context == null) {
+            context = assign(Thread.currentThread());
+        }
+        return context;
+    }
+
+    private synchronized PolyglotContext assign(Thread thread) {
+        assigned.keySet().removeIf(t -> !t.isAlive());
+        Set<PolyglotContext> used = Collections.newSetFromMap(new IdentityHashMap<>());
+        used.addAll(assigned.values());
+        PolyglotContext context = null;
+        for (PolyglotContext idle : contexts) {
+            if (!used.contains(idle)) {
+                context = idle;
+                break;
+            }
+        }
+        if (context == null) {
+            context = new PolyglotContext(factory);
+            if (globalBindings != null) {
+                context.setBindings(globalBindings, ScriptContext.GLOBAL_SCOPE);
+            }
+            if (outputMode != null) {
+                context.setOutputMode(outputMode);
+            }
+            contexts.add(context);
+        } else {
+            context.resetGlobals();
+        }
+        assigned.put(thread, context);
+        used.add(context);
+        closeIdleContexts(used);
+        return context;
+    }
+
+    /**
+     * Closes contexts of dead threads while there are more than {@code maxContexts}.
+     */
+    private void closeIdleContexts(Set<PolyglotContext> used) {
+        Iterator<PolyglotContext> iterator = contexts.iterator();
+        while (contexts.size() > maxContexts && iterator.hasNext()) {
+            PolyglotContext context = iterator.next();
+            if (!used.contains(context)) {
+                iterator.remove();
+                context.close();
+            }
+        }
+    }
+
+    synchronized void setGlobalBindings(Bindings bindings) {
+        for (PolyglotContext context : contexts) {
+            if (context.isInitialized()) {
+                throw new UnsupportedOperationException(
+                        "Global bindings for Polyglot language can only be set before the context is initialized.");
+            }
+        }
+        this.globalBindings = bindings;
+        for (PolyglotContext context : contexts) {
+            context.setBindings(bindings, ScriptContext.GLOBAL_SCOPE);
+        }
+    }
+
+    synchronized void setOutputMode(OutputMode mode) {
+        this.outputMode = mode;
+        for (PolyglotContext context : contexts) {
+            context.setOutputMode(mode);
+        }
+    }
+
+    synchronized int size() {
+        return contexts.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        for (PolyglotContext context : contexts) {
+            context.close();
+        }
+        contexts.clear();
+        assigned.clear();
+    }
+}
@@ -0,0 +1,162 @@
+package io.metersphere.python.scriptengine;
+
+import org.graalvm.polyglot.Value;
+
+import java.math.BigInteger;
+import java.nio.ByteOrder;
+import java.util.*;
+
+/**
+ * Copies a Python object graph into plain Java objects in a single pass, so the result can be
+ * handed to code that must not keep or touch guest objects. Every guest value is read exactly
+ * once, whereas the {@code Map}/{@code List} proxies created by {@code as(Object.class)} go
+ * through the polyglot boundary on every access.
+ * <p>
+ * {@code str}, {@code bool} and {@code int}/{@code float} become {@code String}, {@code Boolean}
+ * and the smallest of {@code Integer}, {@code Long}, {@code Double} and {@code BigInteger} that
+ * holds the value. {@code list} and {@code tuple} become {@code ArrayList}s, {@code dict}s become
+ * {@code LinkedHashMap}s in insertion order, {@code bytes} and {@code bytearray} become
+ * {@code byte[]} and other iterables such as {@code set} become {@code ArrayList}s. Host objects
+ * are unwrapped. Anything else, e.g. functions and class instances, is converted with
+ * {@link Value#as(Class) as(Object.class)}.
+ */
+public final class PolyglotValueExporter {
+
+    public static final int DEFAULT_MAX_DEPTH = 64;
+
+    private final int maxDepth;
+    private final Set<Value> path = new HashSet<>();
+
+    private PolyglotValueExporter(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Exports the value with a nesting limit of {@link #DEFAULT_MAX_DEPTH}.
+     */
+    public static Object export(Value value) {
+        return export(value, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * Exports the value. Objects shared by several parents are copied once per parent.
+     *
+     * @param maxDepth the maximum nesting of containers
+     * @throws IllegalArgumentException if the graph is nested deeper than {@code maxDepth} or
+     *                                  contains a cycle
+     */
+    public static Object export(Value value, int maxDepth) {
+        if (value == null) {
+            return null;
+        }
+        return new PolyglotValueExporter(maxDepth).toJava(value, 0);
+    }
+
+    private Object toJava(Value value, int depth) {
+        // most common kinds first, every check is a call into the guest
+        if (value.isString()) {
+            return value.asString();
+        } else if (value.isBoolean()) {
+            return value.asBoolean();
+        } else if (value.isNumber()) {
+            return toNumber(value);
+        } else if (value.isNull()) {
+            return null;
+        } else if (value.isHostObject()) {
+            return value.asHostObject();
+        }
+        if (depth >= maxDepth) {
+            throw new IllegalArgumentException("Value is nested deeper than " + maxDepth + " levels");
+        }
+        if (!path.add(value)) {
+            throw new IllegalArgumentException("Value contains a cycle");
+        }
+        try {
+            if (value.hasBufferElements()) {
+                return toBytes(value);
+            } else if (value.hasArrayElements()) {
+                String type = value.getMetaObject().getMetaSimpleName();
+                if ("bytes".equals(type) || "bytearray".equals(type)) {
+                    return hexToBytes(value.invokeMember("hex").asString());
+                }
+                return arrayToList(value, depth + 1);
+            } else if (value.hasHashEntries()) {
+                return toMap(value, depth + 1);
+            } else if (value.canExecute()) {
+                return value.as(Object.class);
+            } else if (value.hasIterator()) {
+                return iteratorToList(value.getIterator(), depth + 1);
+            }
+            return value.as(Object.class);
+        } finally {
+            path.remove(value);
+        }
+    }
+
+    private static Object toNumber(Value value) {
+        if (value.fitsInInt()) {
+            return value.asInt();
+        } else if (value.fitsInLong()) {
+            return value.asLong();
+        } else if ("int".equals(value.getMetaObject().getMetaSimpleName())) {
+            // large ints are not exposed as big integers by the interop protocol
+            return new BigInteger(value.toString());
+        }
+        return value.asDouble();
+    }
+
+    private static byte[] toBytes(Value value) {
+        long size = value.getBufferSize();
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Buffer of " + size + " bytes is too large");
+        }
+        byte[] bytes = new byte[(int) size];
+        int i = 0;
+        // eight bytes per guest call
+        for (; i + Long.BYTES <= bytes.length; i += Long.BYTES) {
+            long word = value.readBufferLong(ByteOrder.BIG_ENDIAN, i);
+            for (int b = 0; b < Long.BYTES; b++) {
+                bytes[i + b] = (byte) (word >>> (56 - 8 * b));
+            }
+        }
+        for (; i < bytes.length; i++) {
+            bytes[i] = value.readBufferByte(i);
+        }
+        return bytes;
+    }
+
+    private static byte[] hexToBytes(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ((Character.digit(hex.charAt(2 * i), 16) << 4) | Character.digit(hex.charAt(2 * i + 1), 16));
+        }
+        return bytes;
+    }
+
+    private List<Object> arrayToList(Value array, int depth) {
+        long size = array.getArraySize();
+        List<Object> list = new ArrayList<>((int) Math.min(size, Integer.MAX_VALUE));
+        for (long i = 0; i < size; i++) {
+            list.add(toJava(array.getArrayElement(i), depth));
+        }
+        return list;
+    }
+
+    private List<Object> iteratorToList(Value iterator, int depth) {
+        List<Object> list = new ArrayList<>();
+        while (iterator.hasIteratorNextElement()) {
+            list.add(toJava(iterator.getIteratorNextElement(), depth));
+        }
+        return list;
+    }
+
+    private Map<Object, Object> toMap(Value map, int depth) {
+        Map<Object, Object> result = new LinkedHashMap<>();
+        Value entries = map.getHashEntriesIterator();
+        while (entries.hasIteratorNextElement()) {
+            Value entry = entries.getIteratorNextElement();
+            result.put(toJava(entry.getArrayElement(0), depth), toJava(entry.getArrayElement(1), depth));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,98 @@
+package io.metersphere.python.scriptengine;
+
+import org.graalvm.polyglot.Value;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.script.Bindings;
+import javax.script.ScriptContext;
+import javax.script.ScriptException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolyglotBindingsTest {
+
+    private PolyglotEngine engine;
+    private Bindings bindings;
+
+    @BeforeEach
+    void createEngine() {
+        engine = (PolyglotEngine) new GraalPyEngineFactory().getScriptEngine();
+        bindings = engine.getBindings(ScriptContext.ENGINE_SCOPE);
+    }
+
+    @AfterEach
+    void closeEngine() {
+        engine.close();
+    }
+
+    @Test
+    void globalsDefinedByScriptsShowUpInTheBindings() throws ScriptException {
+        assertFalse(bindings.containsKey("x"));
+        engine.eval("x = 1\ny = 'two'");
+        assertTrue(bindings.keySet().containsAll(List.of("x", "y")));
+        assertEquals(1, bindings.get("x"));
+        assertEquals("two", bindings.get("y"));
+
+        engine.eval("del x");
+        assertFalse(bindings.containsKey("x"));
+        assertFalse(bindings.keySet().contains("x"));
+    }
+
+    @Test
+    void changesToTheBindingsAreVisibleToScripts() throws ScriptException {
+        bindings.put("x", 1);
+        assertEquals(2, engine.eval("x + 1"));
+        assertEquals(1, bindings.put("x", 5));
+        assertEquals(6, engine.eval("x + 1"));
+
+        assertEquals(5, bindings.remove("x"));
+        assertFalse(engine.evalBoolean("'x' in globals()"));
+    }
+
+    @Test
+    void entrySetReadsAndRemovesGlobals() throws ScriptException {
+        engine.eval("a = 1\nb = 2");
+        Map<String, Object> seen = new HashMap<>();
+        for (Iterator<Map.Entry<String, Object>> it = bindings.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Object> entry = it.next();
+            if (entry.getKey().equals("a") || entry.getKey().equals("b")) {
+                seen.put(entry.getKey(), entry.getValue());
+            }
+            if (entry.getKey().equals("a")) {
+                it.remove();
+            }
+        }
+        assertEquals(Map.of("a", 1, "b", 2), seen);
+        assertFalse(bindings.containsKey("a"));
+        assertFalse(engine.evalBoolean("'a' in globals()"));
+        assertTrue(engine.evalBoolean("'b' in globals()"));
+    }
+
+    @Test
+    void containsValueComparesConvertedValuesByEquality() throws ScriptException {
+        engine.eval("s = 'abc'\nn = 42");
+        assertTrue(bindings.containsValue("abc"));
+        assertTrue(bindings.containsValue(42));
+        assertFalse(bindings.containsValue("abd"));
+    }
+
+    @Test
+    void containsValueFindsGuestObjects() throws ScriptException {
+        engine.eval("d = {'a': 1}");
+        Value d = engine.evalToValue("d");
+        assertTrue(bindings.containsValue(d));
+        assertTrue(bindings.containsValue(bindings.get("d")));
+        assertFalse(bindings.containsValue(engine.evalToValue("{'a': 1}")));
+    }
+
+    @Test
+    void containsValueFindsHostObjects() {
+        List<String> list = new ArrayList<>();
+        bindings.put("l", list);
+        assertTrue(bindings.containsValue(list));
+        assertFalse(bindings.containsValue(new Object()));
+    }
+}
@@ -0,0 +1,71 @@
+package io.metersphere.python.scriptengine;
+
+import io.metersphere.scriptengine.common.NativeCopy;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.script.ScriptException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolyglotCollectionImportTest {
+
+    private PolyglotEngine engine;
+
+    @BeforeEach
+    void createEngine() {
+        engine = (PolyglotEngine) new GraalPyEngineFactory().getScriptEngine();
+    }
+
+    @AfterEach
+    void closeEngine() {
+        engine.close();
+    }
+
+    private static Map<String, Object> props() {
+        Map<String, Object> props = new HashMap<>();
+        props.put("name", "a\"b");
+        props.put("count", 3);
+        props.put("items", List.of(1L << 60, 2.5, true));
+        return props;
+    }
+
+    @Test
+    void wrappedCollectionIsCopiedIntoNativeDict() throws ScriptException {
+        Map<String, Object> props = props();
+        engine.put("props", NativeCopy.of(props));
+        assertTrue(engine.evalBoolean("type(props) is dict and type(props['items']) is list"));
+        assertEquals("a\"b|3|" + (1L << 60) + "|True", engine.evalString("'|'.join(str(v) for v in (props['name'], props['count'], props['items'][0], props['items'][2]))"));
+
+        engine.eval("props['count'] = 4");
+        assertEquals(3, props.get("count"));
+    }
+
+    @Test
+    void collectionsAreSharedUnlessWrapped() throws ScriptException {
+        Map<String, Object> props = props();
+        engine.put("props", props);
+        assertFalse(engine.evalBoolean("type(props) is dict"));
+        engine.eval("props['count'] = 4");
+        assertEquals(4L, ((Number) props.get("count")).longValue());
+    }
+
+    @Test
+    void unconvertibleCollectionIsBoundAsHostObject() throws ScriptException {
+        List<Object> list = new ArrayList<>(List.of(1, 2, 3));
+        engine.put("tooLarge", NativeCopy.of(list, 2));
+        list.add(new Object());
+        engine.put("bean", NativeCopy.of(list));
+        assertFalse(engine.evalBoolean("type(tooLarge) is list or type(bean) is list"));
+        assertSame(list, engine.get("bean"));
+    }
+
+    @Test
+    void wrappedCollectionsAreCopiedByBindAll() throws ScriptException {
+        engine.bindAll(Map.of("props", NativeCopy.of(props()), "shared", props()));
+        assertTrue(engine.evalBoolean("type(props) is dict and type(shared) is not dict"));
+    }
+}